@@ -1,20 +1,36 @@
 package com.malacca.viewpager2;
 
+import java.util.Set;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Collections;
 
+import android.os.SystemClock;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.Choreographer;
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
 import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.util.SparseBooleanArray;
 import android.widget.FrameLayout;
+import androidx.core.util.Pools;
 import androidx.core.view.ViewCompat;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import android.annotation.SuppressLint;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
+import androidx.recyclerview.widget.ListUpdateCallback;
 
+import com.facebook.react.R;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.LifecycleEventListener;
 import com.facebook.react.uimanager.events.Event;
 import com.facebook.react.uimanager.UIManagerModule;
 import com.facebook.react.uimanager.ThemedReactContext;
@@ -32,30 +48,182 @@ public class Viewpager2Adapter extends RecyclerView.Adapter<Viewpager2Adapter.Vi
     }
 
     // 动态转换 horizontal 或 Transformer 会导致 selectedItem 前后不一致
-    // 这里缓存一下转换前的 selectedItem 以便转换完成后进行修正
+    // 这里缓存一下转换前的 selectedItem, 在 props 更新完成后进行修正 (见 Viewpager2Manager.onAfterUpdateTransaction)
     int lastSelectedItem = -1;
 
+    // js 端监听的事件, listeners 设置时编译为 flag, 发送事件时无需再查询 ReadableMap
+    static final int EVENT_PAGE_SCROLL = 1;
+    static final int EVENT_PAGE_SCROLL_STATE_CHANGED = 1 << 1;
+    static final int EVENT_PAGE_SELECTED = 1 << 2;
+    static final int EVENT_PAGE_CHANGED = 1 << 3;
+    static final int EVENT_AUTOPLAY = 1 << 4;
+    static final int EVENT_PAGE_VISIBILITY = 1 << 5;
+    static final int EVENT_SWIPE_PERF = 1 << 6;
+
+    // ViewPagerList 通过 nativeID="viewpager2_type_{type}" 声明 子view 的 viewType
+    private static final String VIEW_TYPE_PREFIX = "viewpager2_type_";
+
+    // 自动播放, 设置了 autoplay 相关 props 后才创建
+    private Viewpager2Autoplay autoplay;
+    // animateFakeDrag 命令的动画, 首次使用时创建
+    private Viewpager2FakeDragAnimator fakeDragAnimator;
+    // 根据滑动速度调整离屏个数, 设置了 offscreenPageLimitMax 后才创建
+    private Viewpager2RenderAhead renderAhead;
+    // page 可见比例, 监听了 onPageVisibilityChanged 或设置了 visibilityThresholds 后才创建
+    private Viewpager2Visibility visibility;
+    // 性能统计, 开启 perfMonitor 后才创建
+    private Viewpager2PerfMonitor perfMonitor;
+    // 复用 view 命中统计, 动态模式首次 bind 时创建
+    private Viewpager2PoolMonitor poolMonitor;
+
+    // loop 模式下的虚拟 item 个数, 初始位于中间, 两个方向都可以滑动足够多次
+    // 不使用 Integer.MAX_VALUE, 避免 RecyclerView 以 position * 尺寸 计算滚动偏移时溢出
+    private static final int LOOP_ITEM_COUNT = 1 << 20;
+
+    // RecyclerView 默认的离屏缓存个数, 内存不足时临时设为 0
+    private static final int DEFAULT_ITEM_CACHE_SIZE = 2;
+    // adaptivePool 模式下保留的空闲 子view 个数
+    private static final int POOL_HEADROOM = 2;
+
+    private final ThemedReactContext mReactContext;
     private final ViewPager2 mViewpager2;
     private final RCTEventEmitter mEventEmitter;
     private final EventDispatcher mEventDispatcher;
 
     private RecyclerView mRecyclerView;
-    private ReadableMap eventListeners;
+    private int eventListenerFlags = 0;
     private Boolean itemIsChild;
     private Boolean withBackgroundView;
+    private Boolean backgroundLayer;
+    private Boolean stableKeys;
+    // loop 模式下 虚拟 position 对 loopItemCount 取模即为真实 position
+    // loopItemCount 仅在 notifyLoopChanged 时同步, 保证与 recyclerView 当前的对应关系一致
+    private boolean loop = false;
+    private int loopItemCount = 0;
+    // itemIsChild 模式下尚未刷新的 loop 变化, 记录变化后当前 item 的真实 position, -1 为无
+    private int loopChangedCurrent = -1;
 
     private final List<View> mViews = new ArrayList<>();
-    private SparseArray<ViewHolder> recycledViewHolders;
+    private final List<Integer> mViewTypes = new ArrayList<>();
+    // 按 viewType 分开缓存 尚未使用的预加载 子view 和 回收的 viewHolder
+    private final SparseArray<ArrayDeque<Integer>> idleHolderIds = new SparseArray<>();
+    private final SparseArray<SparseArray<ViewHolder>> recycledViewHolders = new SparseArray<>();
     private SparseArray<ViewHolder> emptyViewHolders;
+    // 已通知 js 补充但尚未收到的 子view 个数, key:viewType
+    private final SparseIntArray requestedHolders = new SparseIntArray();
+    // 已通知 js 释放, 释放后 mViews 的个数, -1 为没有等待释放的
+    private int releaseSize = -1;
+    // 等待释放期间暂缓通知 js 补充的 子view 个数, 释放完成后再统一通知, key:viewType
+    private final SparseIntArray deferredHolders = new SparseIntArray();
+    // 各 position 的 viewType, 为 null 说明都是同一类型
+    private List<Integer> itemTypes;
     private int itemCount = 0;
     private int currentHolderId = 0;
     private View backgroundView;
+    // 等待 viewHolder 创建后再挂载 backgroundView 的真实 position
     private int backgroundViewPosition = -1;
+    // 背景层模式下 backgroundView 跟随的 adapter position
+    private int backgroundLayerPosition = -1;
+
+    // itemIsChild 模式下, 与当前 item 距离超过 windowSize 的 page, 由 js 卸载其内容 (windowChanged 消息)
+    private int windowSize = 0;
+    private int lastWindowCurrent = -1;
+    private int lastWindow = -1;
+
+    // 系统内存严重不足时降低 offscreenPageLimit, 压力缓解 / 一段时间后 / 回到前台后恢复
+    private static final long TRIM_RESTORE_DELAY = 30000;
+    private int offscreenPageLimit = ViewPager2.OFFSCREEN_PAGE_LIMIT_DEFAULT;
+    private boolean offscreenTrimmed = false;
+    private final Runnable loopChangedRunnable = new Runnable() {
+        @Override
+        public void run() {
+            resetLoopPositions(loopChangedCurrent);
+        }
+    };
+    private final Runnable restoreOffscreenRunnable = new Runnable() {
+        @Override
+        public void run() {
+            restoreOffscreenLimit();
+        }
+    };
+    private final ComponentCallbacks2 trimMemoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            trimMemory(level);
+        }
+
+        @Override
+        public void onLowMemory() {
+            trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        }
+    };
+    private final LifecycleEventListener lifecycleListener = new LifecycleEventListener() {
+        @Override
+        public void onHostResume() {
+            restoreOffscreenLimit();
+        }
+
+        @Override
+        public void onHostPause() {
+        }
+
+        @Override
+        public void onHostDestroy() {
+        }
+    };
+
+    // 各个 子view(holderId) 最后一次显示的 position, 用于挑选回收的 viewHolder 及避免重复渲染
+    private final SparseIntArray holderPositions = new SparseIntArray();
+
+    // stableKeys 模式下, 每个 position 对应的 key, 及各个 子view(holderId) 最后一次显示的 key
+    private List<String> itemKeys;
+    private final SparseArray<String> holderKeys = new SparseArray<>();
+    // itemKeys 每次被修改都会递增, 用于判断后台 diff 的结果是否仍然有效
+    private int keysVersion = 0;
+    private Viewpager2Differ keysDiffer;
+
+    // 同一帧内的 bindViewHolder 合并为 bindViewHolders 消息, 按离当前 item 的距离分批发送, key:from, value:to
+    // pendingRenderHolders 记录是否需要重新渲染, 为 false 说明仅 position 发生了偏移
+    private final SparseIntArray pendingBindHolders = new SparseIntArray();
+    private final SparseBooleanArray pendingRenderHolders = new SparseBooleanArray();
+    private boolean bindFrameScheduled = false;
+    private final Choreographer.FrameCallback bindFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            bindFrameScheduled = false;
+            flushBindViewHolders();
+        }
+    };
+
+    // 程序内部的中间跳转 (如 setCurrentIndex 的 jumpNear), 期间不向 js 发送 page 相关事件, 其他 page 回调也忽略
+    private boolean pageEventsSuppressed = false;
+
+    // onPageScroll 节流间隔 (毫秒), 节流期间只记录最新的 offset, 到期后补发, 确保最终位置一定送达
+    private int scrollEventThrottle = 0;
+    private long lastScrollEventTime = 0;
+    private boolean scrollEventPending = false;
+    private int pendingScrollPosition;
+    private float pendingScrollOffset;
+    private int pendingScrollOffsetPixels;
+    private boolean pendingScrollFake;
+    private final Runnable scrollEventRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushPageScrollEvent();
+        }
+    };
 
     Viewpager2Adapter(ThemedReactContext reactContext, ViewPager2 viewpager2) {
+        mReactContext = reactContext;
         mViewpager2 = viewpager2;
         mEventEmitter = reactContext.getJSModule(RCTEventEmitter.class);
         mEventDispatcher = reactContext.getNativeModule(UIManagerModule.class).getEventDispatcher();
+        reactContext.getApplicationContext().registerComponentCallbacks(trimMemoryCallbacks);
+        reactContext.addLifecycleEventListener(lifecycleListener);
     }
 
     // 修改切换效果前, 记录 selectedItem
@@ -89,22 +257,251 @@ public class Viewpager2Adapter extends RecyclerView.Adapter<Viewpager2Adapter.Vi
         return withBackgroundView != null && withBackgroundView;
     }
 
+    /**
+     * 背景层模式, 不能动态修改, 需在添加 backgroundView 之前设置
+     * backgroundView 作为 viewpager 的 子view 挂载在 recyclerView 之下, 仅挂载一次
+     * 通过 translation 跟随当前 page (见 updateBackgroundLayer), 切换 page 时不再移动到 viewHolder 中
+     * 避免 视频 等较重的 子view 反复 detach/attach 及重新布局
+     */
+    void setBackgroundLayer(boolean layer) {
+        if (backgroundLayer == null) {
+            backgroundLayer = layer;
+        }
+    }
+
+    private boolean isBackgroundLayer() {
+        return isWithBackgroundView() && backgroundLayer != null && backgroundLayer;
+    }
+
+    // 是否循环展示, 由 native 端映射虚拟 position, js 端只会收到真实的 position
+    void setLoop(boolean enable) {
+        if (loop == enable) {
+            return;
+        }
+        int current = getLoopCurrent();
+        loop = enable;
+        resetLoopPositions(current);
+    }
+
+    boolean isLooping() {
+        return loop && loopItemCount > 1;
+    }
+
+    // 真实的 item 个数
+    int getRealItemCount() {
+        return getItemIsChild() ? mViews.size() : itemCount;
+    }
+
+    // adapter position 转为真实 position
+    int getRealPosition(int position) {
+        return isLooping() ? position % loopItemCount : position;
+    }
+
+    // js 端的 index 转为 adapter position, loop 模式下取距离当前 item 最近的一个, 这样平滑滚动的路径最短
+    int getAdapterPosition(int index) {
+        if (!isLooping() || index < 0) {
+            return index;
+        }
+        int current = mViewpager2.getCurrentItem();
+        int position = current - current % loopItemCount + index % loopItemCount;
+        int half = loopItemCount / 2;
+        if (position - current > half) {
+            position -= loopItemCount;
+        } else if (current - position > half) {
+            position += loopItemCount;
+        }
+        return position;
+    }
+
+    // 两个真实 position 的距离, loop 模式下首尾相连
+    private int getRealDistance(int from, int to) {
+        int distance = Math.abs(from - to);
+        return isLooping() ? Math.min(distance, loopItemCount - distance) : distance;
+    }
+
+    private int getLoopStartPosition() {
+        int half = LOOP_ITEM_COUNT / 2;
+        return half - half % loopItemCount;
+    }
+
+    // 当前 item 的真实 position, 有尚未刷新的 loop 变化时, 取变化后的 position
+    private int getLoopCurrent() {
+        return loopChangedCurrent >= 0 ? loopChangedCurrent : getRealPosition(mViewpager2.getCurrentItem());
+    }
+
+    /**
+     * loop 模式下 item 个数变化后, 虚拟 position 与真实 position 的对应关系也随之改变, 无法局部通知
+     * 整体刷新后将当前 item 移回中间位置, current 为变化后当前 item 的真实 position
+     * 已显示的 子view 按真实 position 记录, 不会重新渲染
+     * itemIsChild 模式下挂载时 子view 逐个 addView, 同一批次的变化合并为一次刷新 (post 到本批次 UI 操作之后)
+     */
+    private void notifyLoopChanged(int current) {
+        if (!getItemIsChild()) {
+            resetLoopPositions(current);
+            return;
+        }
+        if (loopChangedCurrent < 0) {
+            mViewpager2.post(loopChangedRunnable);
+        }
+        loopChangedCurrent = Math.max(0, current);
+    }
+
+    // 立即执行尚未刷新的 loop 变化
+    void flushLoopChanged() {
+        if (loopChangedCurrent >= 0) {
+            resetLoopPositions(loopChangedCurrent);
+        }
+    }
+
+    private void resetLoopPositions(int current) {
+        if (loopChangedCurrent >= 0) {
+            loopChangedCurrent = -1;
+            mViewpager2.removeCallbacks(loopChangedRunnable);
+        }
+        loopItemCount = getRealItemCount();
+        notifyDataSetChanged();
+        if (loopItemCount == 0) {
+            return;
+        }
+        current = Math.max(0, Math.min(loopItemCount - 1, current));
+        mViewpager2.setCurrentItem(isLooping() ? getLoopStartPosition() + current : current, false);
+    }
+
+    // 以下为数据变化的通知, loop 模式下整体刷新 (见 notifyLoopChanged), 变化位于当前 item 之前时, 当前 item 随之偏移
+    private void dispatchItemRangeInserted(int startPosition, int count) {
+        if (loop) {
+            int current = getLoopCurrent();
+            // 插入前为空列表时, 没有需要保持的当前 item
+            boolean shift = startPosition <= current && current < getRealItemCount() - count;
+            notifyLoopChanged(shift ? current + count : current);
+        } else {
+            notifyItemRangeInserted(startPosition, count);
+        }
+    }
+
+    private void dispatchItemRangeRemoved(int startPosition, int count) {
+        if (loop) {
+            int current = getLoopCurrent();
+            if (current >= startPosition + count) {
+                current -= count;
+            } else if (current > startPosition) {
+                // 当前 item 被删除, 由删除范围之后的 item 顶替
+                current = startPosition;
+            }
+            notifyLoopChanged(current);
+        } else {
+            notifyItemRangeRemoved(startPosition, count);
+        }
+    }
+
+    private void dispatchItemMoved(int fromPosition, int toPosition) {
+        if (loop) {
+            int current = getLoopCurrent();
+            if (current == fromPosition) {
+                current = toPosition;
+            } else if (fromPosition < current && current <= toPosition) {
+                current--;
+            } else if (toPosition <= current && current < fromPosition) {
+                current++;
+            }
+            notifyLoopChanged(current);
+        } else {
+            notifyItemMoved(fromPosition, toPosition);
+        }
+    }
+
+    private void dispatchItemRangeChanged(int startPosition, int count) {
+        if (isLooping()) {
+            notifyDataSetChanged();
+        } else {
+            notifyItemRangeChanged(startPosition, count);
+        }
+    }
+
+    // itemIsChild 模式下的窗口大小 (当前 item 前后各 windowSize 个), 0 为不启用
+    void setWindowSize(int size) {
+        windowSize = Math.max(0, size);
+        updateVisibleWindow(getRealPosition(mViewpager2.getCurrentItem()));
+    }
+
+    /**
+     * 通知 js 当前的窗口 (windowChanged 消息), js 端将窗口外 page 的内容卸载, 仅保留空的 page 容器
+     * 窗口不小于 offscreenPageLimit + 1, 避免预加载的 page 被卸载; 内存严重不足期间 (offscreenTrimmed) 缩小为 1
+     */
+    void updateVisibleWindow(int current) {
+        if (!getItemIsChild() || windowSize <= 0) {
+            return;
+        }
+        int window = offscreenTrimmed ? 1 : Math.max(windowSize, getOffscreenPageLimit() + 1);
+        if (current == lastWindowCurrent && window == lastWindow) {
+            return;
+        }
+        lastWindowCurrent = current;
+        lastWindow = window;
+        WritableMap event = Arguments.createMap();
+        event.putString("event", "windowChanged");
+        event.putInt("current", current);
+        event.putInt("window", window);
+        sendEvent(event);
+    }
+
     void addView(View child, int index) {
         if (isWithBackgroundView()) {
             if(index == 0) {
                 backgroundView = child;
+                if (isBackgroundLayer()) {
+                    mViewpager2.addView(child, 0);
+                    bindBackgroundView(mViewpager2.getCurrentItem());
+                }
                 return;
             }
             index--;
         }
         mViews.add(index, child);
         if (getItemIsChild()) {
-            notifyItemInserted(index);
+            dispatchItemRangeInserted(index, 1);
         } else {
-            bindFailedViewHolder();
+            int viewType = getViewType(child);
+            mViewTypes.add(index, viewType);
+            getIdleHolderIds(viewType).add(index);
+            int requested = requestedHolders.get(viewType);
+            if (requested > 0) {
+                requestedHolders.put(viewType, requested - 1);
+            }
+            bindFailedViewHolder(viewType);
         }
     }
 
+    private static int getViewType(View child) {
+        Object nativeId = child.getTag(R.id.view_tag_native_id);
+        if (nativeId instanceof String && ((String) nativeId).startsWith(VIEW_TYPE_PREFIX)) {
+            try {
+                return Integer.parseInt(((String) nativeId).substring(VIEW_TYPE_PREFIX.length()));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private ArrayDeque<Integer> getIdleHolderIds(int viewType) {
+        ArrayDeque<Integer> holderIds = idleHolderIds.get(viewType);
+        if (holderIds == null) {
+            holderIds = new ArrayDeque<>();
+            idleHolderIds.put(viewType, holderIds);
+        }
+        return holderIds;
+    }
+
+    private SparseArray<ViewHolder> getRecycledViewHolders(int viewType) {
+        SparseArray<ViewHolder> holders = recycledViewHolders.get(viewType);
+        if (holders == null) {
+            holders = new SparseArray<>();
+            recycledViewHolders.put(viewType, holders);
+        }
+        return holders;
+    }
+
     View getChildAt(int index) {
         if (isWithBackgroundView()) {
             if (index == 0) {
@@ -118,6 +515,9 @@ public class Viewpager2Adapter extends RecyclerView.Adapter<Viewpager2Adapter.Vi
     void removeViewAt(int index) {
         if (isWithBackgroundView()) {
             if (index == 0) {
+                if (isBackgroundLayer() && backgroundView != null) {
+                    mViewpager2.removeView(backgroundView);
+                }
                 backgroundView = null;
                 return;
             }
@@ -125,7 +525,13 @@ public class Viewpager2Adapter extends RecyclerView.Adapter<Viewpager2Adapter.Vi
         }
         mViews.remove(index);
         if (getItemIsChild()) {
-            notifyItemRemoved(index);
+            dispatchItemRangeRemoved(index, 1);
+        } else {
+            getIdleHolderIds(mViewTypes.remove(index)).remove(index);
+            if (mViews.size() <= releaseSize) {
+                releaseSize = -1;
+                sendDeferredViewHolders();
+            }
         }
     }
 
@@ -133,6 +539,164 @@ public class Viewpager2Adapter extends RecyclerView.Adapter<Viewpager2Adapter.Vi
         return mViews.size() + (isWithBackgroundView() && backgroundView != null ? 1 : 0);
     }
 
+    /**
+     * 是否使用 key 标识 item, 只能设置一次, 不能动态修改
+     * 返回 true 说明刚刚开启, 需要调用者在 adapter 未挂载的情况下 setHasStableIds
+     */
+    boolean setStableKeys(boolean enable) {
+        if (stableKeys != null) {
+            return false;
+        }
+        stableKeys = enable;
+        if (enable) {
+            itemKeys = new ArrayList<>();
+        }
+        return enable;
+    }
+
+    private boolean isStableKeys() {
+        return itemKeys != null;
+    }
+
+    // stableKeys 模式下的 setCount, 仅 key 发生变化的 position 需要重新 bind
+    void setItemKeys(@NonNull List<String> keys) {
+        if (!isStableKeys()) {
+            setItemCount(keys.size());
+            return;
+        }
+        List<String> oldKeys = itemKeys;
+        int oldCount = itemCount;
+        int common = Math.min(Math.min(oldKeys.size(), oldCount), keys.size());
+        itemKeys = keys;
+        itemCount = keys.size();
+        keysVersion++;
+        notifyChangedRanges(oldKeys, keys, common);
+        if (itemCount > oldCount) {
+            dispatchItemRangeInserted(oldCount, itemCount - oldCount);
+        } else if (itemCount < oldCount) {
+            offsetHolderPositions(itemCount, itemCount - oldCount);
+            dispatchItemRangeRemoved(itemCount, oldCount - itemCount);
+        }
+    }
+
+    private static boolean keyEquals(String a, String b) {
+        return a != null && a.equals(b);
+    }
+
+    // 逐个比较新旧列表 [0, count) 范围, 连续变化的 position 合并为一次通知
+    private void notifyChangedRanges(List<?> oldList, List<?> newList, int count) {
+        int changedStart = -1;
+        for (int i = 0; i <= count; i++) {
+            Object oldItem = i < count ? oldList.get(i) : null;
+            boolean changed = i < count && (oldItem == null || !oldItem.equals(newList.get(i)));
+            if (changed) {
+                if (changedStart == -1) {
+                    changedStart = i;
+                }
+            } else if (changedStart != -1) {
+                dispatchItemRangeChanged(changedStart, i - changedStart);
+                changedStart = -1;
+            }
+        }
+    }
+
+    // 更新各 position 的 viewType, 已存在的 position 类型发生变化的, 通知重新创建 viewHolder
+    void setItemTypes(@NonNull List<Integer> types) {
+        List<Integer> oldTypes = itemTypes != null ? itemTypes : Collections.nCopies(itemCount, 0);
+        itemTypes = types;
+        notifyChangedRanges(oldTypes, types, Math.min(itemCount, Math.min(oldTypes.size(), types.size())));
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        position = getRealPosition(position);
+        if (getItemIsChild() || itemTypes == null || position >= itemTypes.size()) {
+            return 0;
+        }
+        Integer viewType = itemTypes.get(position);
+        return viewType == null ? 0 : viewType;
+    }
+
+    /**
+     * stableKeys 模式下, 整体更新 key 列表, 在后台线程计算与当前列表的差异
+     * 计算完成后按 插入/删除/移动/修改 逐个通知 recyclerView, 只有真正变化的 page 会重新 bind
+     * dirtyKeys 为 key 未变但数据发生变化的 item, types 为新列表各 position 的 viewType (可为 null)
+     * key 未变但 viewType 变化的 item 同样视为内容变化, 会以新类型重新 bind
+     * callback 在差异应用之后执行
+     */
+    void diffItemKeys(@NonNull final List<String> keys, @Nullable final Set<String> dirtyKeys,
+                      @Nullable final List<Integer> types, @Nullable final Runnable callback) {
+        if (!isStableKeys()) {
+            if (types != null) {
+                setItemTypes(types);
+            }
+            setItemCount(keys.size());
+            if (callback != null) {
+                callback.run();
+            }
+            return;
+        }
+        if (keysDiffer == null) {
+            keysDiffer = new Viewpager2Differ();
+        }
+        final int version = keysVersion;
+        // types 为 null 时类型不变, 无需比较
+        List<Integer> oldTypes = types == null ? null
+                : new ArrayList<>(itemTypes != null ? itemTypes : Collections.nCopies(itemCount, 0));
+        keysDiffer.submit(new ArrayList<>(itemKeys), keys, dirtyKeys, oldTypes, types, new Viewpager2Differ.Callback() {
+            @Override
+            public void onDiffResult(List<String> newKeys, DiffUtil.DiffResult result) {
+                // 计算过程中 key 又被其他命令修改了, 基于最新的 key 重新计算
+                if (version != keysVersion) {
+                    diffItemKeys(keys, dirtyKeys, types, callback);
+                    return;
+                }
+                if (types != null) {
+                    itemTypes = types;
+                }
+                // js 在收到 diff 完成的消息前仍使用旧数据, 先把基于旧 position 的 bind 发送出去
+                while (pendingBindHolders.size() > 0) {
+                    flushBindViewHolders();
+                }
+                applyKeysDiff(newKeys, result);
+                if (callback != null) {
+                    callback.run();
+                }
+            }
+        });
+    }
+
+    private void applyKeysDiff(List<String> keys, DiffUtil.DiffResult result) {
+        itemKeys = keys;
+        itemCount = keys.size();
+        keysVersion++;
+        result.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                offsetHolderPositions(position, count);
+                dispatchItemRangeInserted(position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                offsetHolderPositions(position, -count);
+                dispatchItemRangeRemoved(position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                moveHolderPosition(fromPosition, toPosition);
+                dispatchItemMoved(fromPosition, toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, @Nullable Object payload) {
+                invalidateHolderKeys(position, count);
+                dispatchItemRangeChanged(position, count);
+            }
+        });
+    }
+
     // 不使用 子view 作为 child 的, 手动更改子 view 个数
     void setItemCount(int count) {
         if (count == itemCount) {
@@ -146,18 +710,133 @@ public class Viewpager2Adapter extends RecyclerView.Adapter<Viewpager2Adapter.Vi
     }
 
     void insertItemRange(int startPosition, int count) {
+        insertItemRange(startPosition, count, null, null);
+    }
+
+    // stableKeys 模式下需同时指定插入 item 的 key, 有多种 viewType 的需指定插入 item 的 type
+    void insertItemRange(int startPosition, int count, @Nullable List<String> keys, @Nullable List<Integer> types) {
+        if (itemTypes == null && types != null) {
+            itemTypes = new ArrayList<>(Collections.nCopies(itemCount, 0));
+        }
+        if (itemTypes != null) {
+            for (int i = 0; i < count; i++) {
+                itemTypes.add(Math.min(itemTypes.size(), startPosition + i),
+                        types != null && i < types.size() ? types.get(i) : 0);
+            }
+        }
+        if (isStableKeys()) {
+            keysVersion++;
+            for (int i = 0; i < count; i++) {
+                itemKeys.add(startPosition + i, keys != null && i < keys.size() ? keys.get(i) : null);
+            }
+        }
         itemCount = itemCount + count;
-        notifyItemRangeInserted(startPosition, count);
+        offsetHolderPositions(startPosition, count);
+        dispatchItemRangeInserted(startPosition, count);
     }
 
     void removeItemRange(int startPosition, int count) {
+        if (itemTypes != null && startPosition < itemTypes.size()) {
+            itemTypes.subList(startPosition, Math.min(itemTypes.size(), startPosition + count)).clear();
+        }
+        if (isStableKeys()) {
+            keysVersion++;
+            itemKeys.subList(startPosition, Math.min(itemKeys.size(), startPosition + count)).clear();
+        }
         itemCount = itemCount - count;
-        notifyItemRangeRemoved(startPosition, count);
+        offsetHolderPositions(startPosition, -count);
+        dispatchItemRangeRemoved(startPosition, count);
+    }
+
+    // 插入/移除 后, 已绑定 viewHolder 的 position 会发生偏移, 但不会重新 bind, 这里同步修正
+    // 被移除 position 的 子view 内容已无效, 直接删除记录, 下次 bind 时必定通知 js 重新渲染
+    private void offsetHolderPositions(int startPosition, int count) {
+        for (int i = holderPositions.size() - 1; i >= 0; i--) {
+            int position = holderPositions.valueAt(i);
+            if (position < startPosition) {
+                continue;
+            }
+            int holderId = holderPositions.keyAt(i);
+            if (count < 0 && position < startPosition - count) {
+                holderPositions.removeAt(i);
+            } else {
+                holderPositions.put(holderId, position + count);
+                // stableKeys 模式下 js 不会重置所有 子view, 需告知 js 子view 的新 position
+                if (isStableKeys()) {
+                    queueBindViewHolder(holderId, position + count, false);
+                }
+            }
+        }
+    }
+
+    // item 由 fromPosition 移动到 toPosition, 两者之间的 position 依次偏移一位
+    private void moveHolderPosition(int fromPosition, int toPosition) {
+        for (int i = 0, size = holderPositions.size(); i < size; i++) {
+            int position = holderPositions.valueAt(i);
+            int newPosition = position;
+            if (position == fromPosition) {
+                newPosition = toPosition;
+            } else if (fromPosition < toPosition && position > fromPosition && position <= toPosition) {
+                newPosition = position - 1;
+            } else if (fromPosition > toPosition && position >= toPosition && position < fromPosition) {
+                newPosition = position + 1;
+            }
+            if (newPosition != position) {
+                int holderId = holderPositions.keyAt(i);
+                holderPositions.put(holderId, newPosition);
+                queueBindViewHolder(holderId, newPosition, false);
+            }
+        }
+    }
+
+    // key 未变但数据发生了变化, 清除显示这些 position 的 子view 的 key, 下次 bind 时通知 js 重新渲染
+    private void invalidateHolderKeys(int startPosition, int count) {
+        for (int i = 0, size = holderPositions.size(); i < size; i++) {
+            int position = holderPositions.valueAt(i);
+            if (position >= startPosition && position < startPosition + count) {
+                holderKeys.remove(holderPositions.keyAt(i));
+            }
+        }
+    }
+
+    // 子view(holderId) 当前显示的内容是否就是 position 的内容
+    private boolean isHolderShowing(int holderId, int position) {
+        if (isStableKeys()) {
+            return position < itemKeys.size() && keyEquals(holderKeys.get(holderId), itemKeys.get(position));
+        }
+        return holderPositions.get(holderId, -1) == position;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        int realPosition = getRealPosition(position);
+        if (!isStableKeys() || realPosition >= itemKeys.size()) {
+            return RecyclerView.NO_ID;
+        }
+        String key = itemKeys.get(realPosition);
+        if (key == null) {
+            return RecyclerView.NO_ID;
+        }
+        // 64 位 FNV-1a hash, 冲突概率可忽略
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0, len = key.length(); i < len; i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // loop 模式下同一 item 可能同时出现在相邻的两轮中 (item 个数较少时), 混入轮次以保证 id 唯一
+        if (isLooping()) {
+            hash = hash * 31 + position / loopItemCount;
+        }
+        return hash == RecyclerView.NO_ID ? 0 : hash;
     }
 
     @Override
     public int getItemCount() {
-        return getItemIsChild() ? mViews.size() : itemCount;
+        // loop 模式下的个数在 notifyLoopChanged 时才同步, 合并刷新前保持与 recyclerView 一致
+        if (loop) {
+            return isLooping() ? LOOP_ITEM_COUNT : loopItemCount;
+        }
+        return getRealItemCount();
     }
 
     @Override
@@ -166,6 +845,375 @@ public class Viewpager2Adapter extends RecyclerView.Adapter<Viewpager2Adapter.Vi
         mRecyclerView = recyclerView;
     }
 
+    Viewpager2Autoplay getAutoplay() {
+        if (autoplay == null) {
+            autoplay = new Viewpager2Autoplay(mReactContext, mViewpager2, this);
+        }
+        return autoplay;
+    }
+
+    Viewpager2RenderAhead getRenderAhead() {
+        if (renderAhead == null) {
+            renderAhead = new Viewpager2RenderAhead(mViewpager2, this);
+        }
+        return renderAhead;
+    }
+
+    Viewpager2Visibility getVisibility() {
+        if (visibility == null) {
+            visibility = new Viewpager2Visibility(mViewpager2, this);
+        }
+        return visibility;
+    }
+
+    // 开启/关闭 性能统计, 关闭后统计数据清空
+    void setPerfMonitor(boolean enable) {
+        if (enable == (perfMonitor != null)) {
+            return;
+        }
+        if (enable) {
+            perfMonitor = new Viewpager2PerfMonitor(mViewpager2, this);
+        } else {
+            perfMonitor.destroy();
+            perfMonitor = null;
+        }
+        Viewpager2Transformer transformer = getPageTransformer();
+        if (transformer != null) {
+            transformer.setPerfMonitor(perfMonitor);
+        }
+    }
+
+    @Nullable
+    Viewpager2PerfMonitor getPerfMonitor() {
+        return perfMonitor;
+    }
+
+    Viewpager2FakeDragAnimator getFakeDragAnimator() {
+        if (fakeDragAnimator == null) {
+            fakeDragAnimator = new Viewpager2FakeDragAnimator(mViewpager2, this);
+        }
+        return fakeDragAnimator;
+    }
+
+    Viewpager2PoolMonitor getPoolMonitor() {
+        if (poolMonitor == null) {
+            poolMonitor = new Viewpager2PoolMonitor(mViewpager2, this);
+        }
+        return poolMonitor;
+    }
+
+    // 可用的 子view 个数, 不含已通知 js 释放的
+    int getPoolSize() {
+        return releaseSize == -1 ? mViews.size() : Math.min(releaseSize, mViews.size());
+    }
+
+    // 正在被 viewHolder 占用的 子view 个数, 即 闲置/已回收 之外的
+    int getActiveHolderCount() {
+        if (getItemIsChild()) {
+            return 0;
+        }
+        int count = getPoolSize();
+        for (int i = 0, size = idleHolderIds.size(); i < size; i++) {
+            count -= idleHolderIds.valueAt(i).size();
+        }
+        for (int i = 0, size = recycledViewHolders.size(); i < size; i++) {
+            count -= recycledViewHolders.valueAt(i).size();
+        }
+        return Math.max(0, count);
+    }
+
+    /**
+     * adaptivePool 模式下释放超出所需的 子view, 返回释放个数
+     * 保留个数为 max(当前占用个数, 离屏窗口所需个数) + POOL_HEADROOM
+     * holderId 即 子view 在 mViews 中的索引, 所以只能从末尾连续释放 闲置/已回收 的 子view
+     * 通知 js 缩减至 size 个 (releaseViewHolders 消息), 等待补充或释放期间不处理, 避免两端个数不一致
+     */
+    int releaseIdleViewHolders() {
+        if (getItemIsChild() || releaseSize != -1 || hasPendingViewHolders()) {
+            return 0;
+        }
+        int keep = Math.max(getActiveHolderCount(), 2 * getOffscreenPageLimit() + 1 + DEFAULT_ITEM_CACHE_SIZE) + POOL_HEADROOM;
+        int size = mViews.size();
+        while (size > keep) {
+            int holderId = size - 1;
+            int viewType = mViewTypes.get(holderId);
+            if (!getIdleHolderIds(viewType).contains(holderId)
+                    && getRecycledViewHolders(viewType).indexOfKey(holderId) < 0) {
+                break;
+            }
+            size--;
+        }
+        int count = mViews.size() - size;
+        if (count == 0) {
+            return 0;
+        }
+        for (int holderId = size; holderId < mViews.size(); holderId++) {
+            int viewType = mViewTypes.get(holderId);
+            SparseArray<ViewHolder> recycledHolders = getRecycledViewHolders(viewType);
+            ViewHolder recycledHolder = recycledHolders.get(holderId);
+            if (recycledHolder != null) {
+                recycledHolder.holderId = -1;
+                ((FrameLayout) recycledHolder.itemView).removeAllViews();
+                recycledHolders.remove(holderId);
+            } else {
+                getIdleHolderIds(viewType).remove(holderId);
+            }
+            holderPositions.delete(holderId);
+            holderKeys.remove(holderId);
+            pendingBindHolders.delete(holderId);
+            pendingRenderHolders.delete(holderId);
+        }
+        releaseSize = size;
+        WritableMap event = Arguments.createMap();
+        event.putString("event", "releaseViewHolders");
+        event.putInt("size", size);
+        sendEvent(event);
+        return count;
+    }
+
+    // 是否有已通知 js 补充但尚未收到的 子view
+    private boolean hasPendingViewHolders() {
+        if (emptyViewHolders != null && emptyViewHolders.size() > 0) {
+            return true;
+        }
+        for (int i = 0, size = requestedHolders.size(); i < size; i++) {
+            if (requestedHolders.valueAt(i) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 离屏预加载个数, 内存不足时会临时降低 (见 trimMemory)
+    void setOffscreenPageLimit(int limit) {
+        offscreenPageLimit = limit;
+        if (!offscreenTrimmed) {
+            mViewpager2.setOffscreenPageLimit(limit);
+        }
+    }
+
+    int getOffscreenPageLimit() {
+        return Math.max(0, offscreenPageLimit);
+    }
+
+    /**
+     * 快速滑动时临时扩大离屏个数, limit 为 -1 时恢复为 offscreenPageLimit, 内存不足期间不扩大
+     * 离屏个数由 viewpager2 对称应用到前后两侧, 后方多为刚经过的 page, 主要是延迟回收, 不会重新 bind
+     * 动态模式下先按 滑动方向(direction) 前方的 page 类型通知 js 补充复用 view, 避免 bind 时才临时创建
+     */
+    void setRenderAheadLimit(int limit, int direction) {
+        if (offscreenTrimmed) {
+            return;
+        }
+        if (limit < 0) {
+            // 父级不响应 requestLayout, 需手动布局, 扩大范围时多布局的 page 才会被回收
+            mViewpager2.setOffscreenPageLimit(offscreenPageLimit);
+            Viewpager2Manager.layoutNow(mViewpager2);
+            return;
+        }
+        if (!getItemIsChild()) {
+            requestViewHolders(limit, direction);
+        }
+        mViewpager2.setOffscreenPageLimit(limit);
+    }
+
+    /**
+     * 统计扩大后窗口内各类型 page 所需的 子view 个数, 不足的一次性通知 js 补充 (addViewHolders 消息)
+     * 窗口为当前 item 前后各 limit 个, 另加 recyclerView 离屏缓存的 2 个, 滑动方向前方再多留 1 个
+     */
+    private void requestViewHolders(int limit, int direction) {
+        int current = mViewpager2.getCurrentItem();
+        int count = getItemCount();
+        int ahead = limit + DEFAULT_ITEM_CACHE_SIZE + 1;
+        int behind = limit + DEFAULT_ITEM_CACHE_SIZE - 1;
+        int start = Math.max(0, direction > 0 ? current - behind : current - ahead);
+        int end = Math.min(count - 1, direction > 0 ? current + ahead : current + behind);
+        SparseIntArray missing = new SparseIntArray();
+        for (int position = start; position <= end; position++) {
+            int viewType = getItemViewType(position);
+            missing.put(viewType, missing.get(viewType) + 1);
+        }
+        for (int holderId = 0, size = getPoolSize(); holderId < size; holderId++) {
+            int viewType = mViewTypes.get(holderId);
+            missing.put(viewType, missing.get(viewType) - 1);
+        }
+        sendAddViewHolders(missing);
+    }
+
+    // 通知 js 补充各类型的 子view (addViewHolders 消息), missing 为各类型缺少的个数, 已请求的部分不重复请求
+    // 等待 js 释放期间 (releaseSize != -1) 先暂缓, 避免 js 补充的 子view 与正在释放的 子view 交错导致两端个数不一致
+    private void sendAddViewHolders(SparseIntArray missing) {
+        WritableArray types = Arguments.createArray();
+        int total = 0;
+        for (int i = 0, size = missing.size(); i < size; i++) {
+            int viewType = missing.keyAt(i);
+            int requested = requestedHolders.get(viewType);
+            int deferred = deferredHolders.get(viewType);
+            int need = missing.valueAt(i) - requested - deferred;
+            if (need <= 0) {
+                continue;
+            }
+            if (releaseSize != -1) {
+                deferredHolders.put(viewType, deferred + need);
+                continue;
+            }
+            requestedHolders.put(viewType, requested + need);
+            for (int j = 0; j < need; j++) {
+                types.pushInt(viewType);
+            }
+            total += need;
+        }
+        if (total == 0) {
+            return;
+        }
+        if (poolMonitor != null) {
+            poolMonitor.onGrow(total);
+        }
+        WritableMap event = Arguments.createMap();
+        event.putString("event", "addViewHolders");
+        event.putArray("types", types);
+        sendEvent(event);
+    }
+
+    // js 已释放完成, 通知 js 补充释放期间暂缓的 子view
+    private void sendDeferredViewHolders() {
+        int size = deferredHolders.size();
+        if (size == 0) {
+            return;
+        }
+        SparseIntArray missing = new SparseIntArray();
+        for (int i = 0; i < size; i++) {
+            int viewType = deferredHolders.keyAt(i);
+            missing.put(viewType, requestedHolders.get(viewType) + deferredHolders.valueAt(i));
+        }
+        deferredHolders.clear();
+        sendAddViewHolders(missing);
+    }
+
+    /**
+     * 系统内存不足时, 根据紧急程度逐步释放缓存
+     * 1. RUNNING_LOW / UI_HIDDEN / BACKGROUND / MODERATE: 仅释放回收的 viewHolder (动态模式下已回收的 子view 会通知 js 清空内容)
+     * 2. RUNNING_CRITICAL / COMPLETE: 另外不再预加载离屏 page 并清空离屏缓存
+     *    itemIsChild 模式下设置了 windowSize 的, 窗口缩小为 1 (见 updateVisibleWindow)
+     * 3. 前台收到更低的 RUNNING_* 级别说明压力已缓解, 恢复离屏个数; RUNNING_CRITICAL 后 TRIM_RESTORE_DELAY 无新的通知也恢复
+     *    COMPLETE 一般发生在后台, 回到前台后恢复
+     */
+    private void trimMemory(int level) {
+        boolean critical = level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL
+                || level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
+        if (level < ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            restoreOffscreenLimit();
+        }
+        if (level < ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return;
+        }
+        // 先降低离屏个数, 清空离屏缓存时 viewHolder 会立即被回收, 可在下面一并释放
+        if (critical && !offscreenTrimmed) {
+            offscreenTrimmed = true;
+            mViewpager2.setOffscreenPageLimit(ViewPager2.OFFSCREEN_PAGE_LIMIT_DEFAULT);
+            if (mRecyclerView != null) {
+                mRecyclerView.setItemViewCacheSize(0);
+            }
+        }
+        if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            mViewpager2.removeCallbacks(restoreOffscreenRunnable);
+            mViewpager2.postDelayed(restoreOffscreenRunnable, TRIM_RESTORE_DELAY);
+        }
+        if (mRecyclerView != null) {
+            mRecyclerView.getRecycledViewPool().clear();
+        }
+        if (!getItemIsChild()) {
+            releaseRecycledViews();
+        } else if (critical) {
+            updateVisibleWindow(getRealPosition(mViewpager2.getCurrentItem()));
+        }
+    }
+
+    private void restoreOffscreenLimit() {
+        mViewpager2.removeCallbacks(restoreOffscreenRunnable);
+        if (!offscreenTrimmed) {
+            return;
+        }
+        offscreenTrimmed = false;
+        updateVisibleWindow(getRealPosition(mViewpager2.getCurrentItem()));
+        mViewpager2.setOffscreenPageLimit(offscreenPageLimit);
+        if (mRecyclerView != null) {
+            mRecyclerView.setItemViewCacheSize(DEFAULT_ITEM_CACHE_SIZE);
+        }
+    }
+
+    // 回收的 子view 放回闲置队列, 闲置 子view 的内容已不再显示, 通知 js 清空 (trimmed 消息)
+    private void releaseRecycledViews() {
+        for (int i = 0, size = recycledViewHolders.size(); i < size; i++) {
+            SparseArray<ViewHolder> holders = recycledViewHolders.valueAt(i);
+            for (int j = 0, count = holders.size(); j < count; j++) {
+                releaseViewHolder(holders.valueAt(j));
+            }
+            holders.clear();
+        }
+        WritableArray trimmed = Arguments.createArray();
+        int trimmedCount = 0;
+        for (int i = 0, size = idleHolderIds.size(); i < size; i++) {
+            for (Integer holderId : idleHolderIds.valueAt(i)) {
+                if (holderPositions.indexOfKey(holderId) < 0) {
+                    continue;
+                }
+                holderPositions.delete(holderId);
+                holderKeys.remove(holderId);
+                pendingBindHolders.delete(holderId);
+                pendingRenderHolders.delete(holderId);
+                trimmed.pushInt(holderId);
+                trimmedCount++;
+            }
+        }
+        if (trimmedCount == 0) {
+            return;
+        }
+        WritableMap event = Arguments.createMap();
+        event.putString("event", "trimmed");
+        event.putArray("holders", trimmed);
+        sendEvent(event);
+    }
+
+    // viewpager 被销毁, 释放资源
+    void onDropViewInstance() {
+        mViewpager2.removeCallbacks(loopChangedRunnable);
+        if (scrollEventPending) {
+            scrollEventPending = false;
+            mViewpager2.removeCallbacks(scrollEventRunnable);
+        }
+        mReactContext.getApplicationContext().unregisterComponentCallbacks(trimMemoryCallbacks);
+        mViewpager2.removeCallbacks(restoreOffscreenRunnable);
+        mReactContext.removeLifecycleEventListener(lifecycleListener);
+        if (autoplay != null) {
+            autoplay.destroy();
+            autoplay = null;
+        }
+        if (fakeDragAnimator != null) {
+            fakeDragAnimator.cancel();
+        }
+        if (renderAhead != null) {
+            renderAhead.destroy();
+            renderAhead = null;
+        }
+        if (visibility != null) {
+            visibility.destroy();
+            visibility = null;
+        }
+        setPerfMonitor(false);
+        if (poolMonitor != null) {
+            poolMonitor.destroy();
+            poolMonitor = null;
+        }
+        if (bindFrameScheduled) {
+            bindFrameScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(bindFrameCallback);
+        }
+        if (keysDiffer != null) {
+            keysDiffer.cancel();
+        }
+    }
+
     @NonNull
     @Override
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -181,11 +1229,17 @@ public class Viewpager2Adapter extends RecyclerView.Adapter<Viewpager2Adapter.Vi
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        long start = perfMonitor == null ? 0 : System.nanoTime();
+        // 以下均使用真实 position, loop 模式下同一 item 的各个虚拟 position 共享渲染结果
+        position = getRealPosition(position);
         if (getItemIsChild()) {
             bindStaticViewHolder(holder, position);
         } else {
             bindDynamicViewHolder(holder, position);
         }
+        if (perfMonitor != null) {
+            perfMonitor.addSectionTime(Viewpager2PerfMonitor.SECTION_BIND, System.nanoTime() - start);
+        }
     }
 
     // 绑定静态 预加载view (viewpager item 直接使用子 view)
@@ -195,9 +1249,13 @@ public class Viewpager2Adapter extends RecyclerView.Adapter<Viewpager2Adapter.Vi
             currentHolderId = 1;
         }
         FrameLayout container = (FrameLayout) holder.itemView;
+        if (position >= mViews.size()) {
+            // loop 模式下 子view 已移除, 等待合并刷新 (见 notifyLoopChanged)
+            return;
+        }
         if (container.getChildCount() != 0) {
-            // 刚好命中, 啥都不做
-            if (holder.holderId == position) {
+            // 刚好命中, 啥都不做 (loop 模式下 子view 可能已被相邻一轮的同一 item 取走)
+            if (holder.holderId == position && mViews.get(position).getParent() == container) {
                 initBackgroundView(container, position);
                 return;
             }
@@ -217,59 +1275,238 @@ public class Viewpager2Adapter extends RecyclerView.Adapter<Viewpager2Adapter.Vi
     }
 
     // 绑定动态 预加载view (viewpager item 重复使用, 动态更新)
+    // 子view 按 viewType 分开复用, 只会被绑定到相同类型的 page
     @SuppressLint("UseSparseArrays")
     private boolean bindDynamicViewHolder(@NonNull ViewHolder holder, int position) {
         FrameLayout container = (FrameLayout) holder.itemView;
+        int viewType = holder.getItemViewType();
+        SparseArray<ViewHolder> recycledHolders = getRecycledViewHolders(viewType);
+        ArrayDeque<Integer> idleHolders = getIdleHolderIds(viewType);
+        Viewpager2PoolMonitor monitor = getPoolMonitor();
+        // 之前 bind 失败, 收到 js 补充的 子view 后重新 bind 的, 已计为 miss
+        boolean retry = emptyViewHolders != null && emptyViewHolders.get(position) == holder;
         int from = holder.holderId;
-        if (from == -1) {
-            if (currentHolderId < mViews.size()) {
-                // 够用, 直接使用预加载的 子view
-                from = holder.holderId = currentHolderId;
-                container.addView(mViews.get(from));
-                initBackgroundView(container, position);
-                currentHolderId++;
-            } else if (recycledViewHolders != null && recycledViewHolders.size() > 0) {
-                // 尝试从回收的 recycledViewHolder 中提取 子view
-                int recycledHolderId = recycledViewHolders.keyAt(0);
-                ViewHolder recycledHolder = recycledViewHolders.get(recycledHolderId);
-                recycledHolder.holderId = -1;
-                ((FrameLayout) recycledHolder.itemView).removeAllViews();
-                recycledViewHolders.remove(recycledHolderId);
-                from = holder.holderId = recycledHolderId;
-                container.addView(mViews.get(from));
-                initBackgroundView(container, position);
-            } else {
-                // 以上两种方案都失败了(有可能), 使用兜底方案, 通知 js 再创建一个 子view
-                if (emptyViewHolders == null) {
-                    emptyViewHolders = new SparseArray<>();
-                }
-                emptyViewHolders.put(position, holder);
-                WritableMap event = Arguments.createMap();
-                event.putString("event", "addViewHolder");
-                sendEvent(event);
+        if (from != -1) {
+            // recyclerView 复用了回收的 viewHolder, 若其 子view 上次显示的并非 position
+            // 看看其他回收的 viewHolder 中是否有刚好显示 position 的, 有的话交换 子view, 可免去 js 重新渲染
+            if (recycledHolders.indexOfKey(from) >= 0) {
+                recycledHolders.remove(from);
+                monitor.onRecycledHit();
+            }
+            if (!isHolderShowing(from, position)) {
+                from = swapRecycledViewHolder(holder, recycledHolders, position);
+            }
+        } else if (!idleHolders.isEmpty()) {
+            // 够用, 直接使用预加载的 子view
+            from = holder.holderId = pollIdleHolderId(idleHolders, position);
+            container.addView(mViews.get(from));
+            initBackgroundView(container, position);
+            currentHolderId++;
+            if (!retry) {
+                monitor.onIdleHit();
+            }
+        } else if (recycledHolders.size() > 0) {
+            // 尝试从回收的 recycledViewHolder 中提取 子view
+            int recycledHolderId = pickRecycledHolderId(recycledHolders, position);
+            ViewHolder recycledHolder = recycledHolders.get(recycledHolderId);
+            recycledHolder.holderId = -1;
+            ((FrameLayout) recycledHolder.itemView).removeAllViews();
+            recycledHolders.remove(recycledHolderId);
+            from = holder.holderId = recycledHolderId;
+            container.addView(mViews.get(from));
+            initBackgroundView(container, position);
+            monitor.onRecycledHit();
+        } else {
+            // 以上两种方案都失败了(有可能), 使用兜底方案, 通知 js 再创建一个该类型的 子view
+            if (emptyViewHolders == null) {
+                emptyViewHolders = new SparseArray<>();
+            }
+            emptyViewHolders.put(position, holder);
+            if (!retry) {
+                monitor.onMiss();
+            }
+            // 已提前通知 js 补充且数量足够的, 等待 子view 到达即可 (见 bindFailedViewHolder)
+            int requested = requestedHolders.get(viewType) + deferredHolders.get(viewType);
+            if (countEmptyViewHolders(viewType) <= requested) {
+                return false;
             }
+            // 等待 js 释放期间暂缓, 释放完成后再通知 js 补充
+            if (releaseSize != -1) {
+                deferredHolders.put(viewType, deferredHolders.get(viewType) + 1);
+                return false;
+            }
+            WritableMap event = Arguments.createMap();
+            event.putString("event", "addViewHolder");
+            event.putInt("type", viewType);
+            sendEvent(event);
         }
         if (from == -1) {
             return false;
         }
+        monitor.updatePeak(getActiveHolderCount());
+        // adaptivePool 模式下, 该类型已无 闲置/回收 的 子view, 提前通知 js 补充一个, 避免下次 bind 时才临时创建
+        if (monitor.isAdaptive() && idleHolders.isEmpty() && recycledHolders.size() == 0
+                && requestedHolders.get(viewType) + deferredHolders.get(viewType) == 0) {
+            SparseIntArray missing = new SparseIntArray();
+            missing.put(viewType, 1);
+            sendAddViewHolders(missing);
+        }
+        // 子view 上次显示的就是 position, 无需通知 js 重新渲染
+        // stableKeys 模式下 key 未变化, 仅 position 变化的, 只需告知 js 新的 position
+        boolean render = !isHolderShowing(from, position);
+        if (render || holderPositions.get(from, -1) != position) {
+            holderPositions.put(from, position);
+            if (isStableKeys()) {
+                holderKeys.put(from, position < itemKeys.size() ? itemKeys.get(position) : null);
+            }
+            queueBindViewHolder(from, position, render);
+        }
+        return true;
+    }
+
+    // 内存不足时回收的 子view 会放回闲置队列, 优先使用上次显示的就是 position 的
+    private int pollIdleHolderId(ArrayDeque<Integer> idleHolders, int position) {
+        for (Integer holderId : idleHolders) {
+            if (isHolderShowing(holderId, position)) {
+                idleHolders.remove(holderId);
+                return holderId;
+            }
+        }
+        return idleHolders.poll();
+    }
+
+    /**
+     * 从回收的 viewHolder 中挑选一个 子view 来显示 position
+     * 1. 优先选择上次显示的就是 position (或相同 key) 的, 这样 js 端无需重新渲染
+     * 2. 否则选择上次显示位置离当前 item 最远的, 它最不可能很快被滑回来
+     */
+    private int pickRecycledHolderId(SparseArray<ViewHolder> recycledHolders, int position) {
+        int current = getRealPosition(mViewpager2.getCurrentItem());
+        int pickHolderId = -1, maxDistance = -1;
+        for (int i = 0, size = recycledHolders.size(); i < size; i++) {
+            int holderId = recycledHolders.keyAt(i);
+            if (isHolderShowing(holderId, position)) {
+                return holderId;
+            }
+            int lastPosition = holderPositions.get(holderId, -1);
+            int distance = lastPosition == -1 ? Integer.MAX_VALUE : getRealDistance(lastPosition, current);
+            if (distance > maxDistance) {
+                maxDistance = distance;
+                pickHolderId = holderId;
+            }
+        }
+        return pickHolderId;
+    }
+
+    // 回收的 viewHolder 中有上次显示 position 的 子view, 与 holder 交换 子view, 返回 holder 新的 holderId
+    private int swapRecycledViewHolder(@NonNull ViewHolder holder, SparseArray<ViewHolder> recycledHolders, int position) {
+        int from = holder.holderId;
+        int matchHolderId = -1;
+        for (int i = 0, size = recycledHolders.size(); i < size; i++) {
+            if (isHolderShowing(recycledHolders.keyAt(i), position)) {
+                matchHolderId = recycledHolders.keyAt(i);
+                break;
+            }
+        }
+        if (matchHolderId == -1) {
+            return from;
+        }
+        ViewHolder matchHolder = recycledHolders.get(matchHolderId);
+        FrameLayout container = (FrameLayout) holder.itemView;
+        FrameLayout matchContainer = (FrameLayout) matchHolder.itemView;
+        View view = mViews.get(from);
+        View matchView = mViews.get(matchHolderId);
+        container.removeView(view);
+        matchContainer.removeView(matchView);
+        container.addView(matchView);
+        matchContainer.addView(view);
+        holder.holderId = matchHolderId;
+        matchHolder.holderId = from;
+        recycledHolders.remove(matchHolderId);
+        recycledHolders.put(from, matchHolder);
+        return matchHolderId;
+    }
+
+    // 滑动/setCount 过程中一帧内可能 bind 多次, 缓存起来, 在下一帧统一发送
+    // 同一个 子view 在一帧内多次 bind, 仅保留最后一次
+    private void queueBindViewHolder(int from, int to, boolean render) {
+        pendingBindHolders.put(from, to);
+        pendingRenderHolders.put(from, render || pendingRenderHolders.get(from));
+        if (!bindFrameScheduled) {
+            bindFrameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(bindFrameCallback);
+        }
+    }
+
+    /**
+     * setCount / 跳转 / 修改 offscreenPageLimit 时, 一次 layout 会 bind 窗口内所有 page
+     * 为使当前 page 尽快渲染, 每帧仅发送离当前 item 最近的一圈 需要重新渲染的 page, 其余留到后续帧
+     * 仅 position 偏移(render=false) 的无需渲染, 随第一批一起发送
+     */
+    private void flushBindViewHolders() {
+        int size = pendingBindHolders.size();
+        if (size == 0) {
+            return;
+        }
+        int current = getRealPosition(mViewpager2.getCurrentItem());
+        int ring = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            if (pendingRenderHolders.get(pendingBindHolders.keyAt(i))) {
+                ring = Math.min(ring, getRealDistance(pendingBindHolders.valueAt(i), current));
+            }
+        }
+        WritableArray holders = Arguments.createArray();
+        for (int i = size - 1; i >= 0; i--) {
+            int from = pendingBindHolders.keyAt(i);
+            int to = pendingBindHolders.valueAt(i);
+            boolean render = pendingRenderHolders.get(from);
+            if (render && getRealDistance(to, current) > ring) {
+                continue;
+            }
+            WritableMap holder = Arguments.createMap();
+            holder.putInt("from", from);
+            holder.putInt("to", to);
+            holder.putBoolean("render", render);
+            holders.pushMap(holder);
+            pendingBindHolders.removeAt(i);
+            pendingRenderHolders.delete(from);
+        }
         WritableMap event = Arguments.createMap();
-        event.putString("event", "bindViewHolder");
-        event.putInt("from", from);
-        event.putInt("to", position);
+        event.putString("event", "bindViewHolders");
+        event.putArray("holders", holders);
         sendEvent(event);
-        return true;
+        if (pendingBindHolders.size() > 0 && !bindFrameScheduled) {
+            bindFrameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(bindFrameCallback);
+        }
+    }
+
+    private int countEmptyViewHolders(int viewType) {
+        int count = 0;
+        for (int i = 0, size = emptyViewHolders.size(); i < size; i++) {
+            if (emptyViewHolders.valueAt(i).getItemViewType() == viewType) {
+                count++;
+            }
+        }
+        return count;
     }
 
     // bindDynamicViewHolder 失败后通知 js 创建 子view
-    // 这里将收到新创建的 子view 绑定到之前的 emptyViewHolder
-    private void bindFailedViewHolder() {
-        if (emptyViewHolders == null || emptyViewHolders.size() == 0) {
+    // 这里将收到新创建的 子view 绑定到之前同类型的 emptyViewHolder
+    private void bindFailedViewHolder(int viewType) {
+        if (emptyViewHolders == null) {
             return;
         }
-        int position = emptyViewHolders.keyAt(0);
-        ViewHolder viewHolder = emptyViewHolders.get(position);
-        if (bindDynamicViewHolder(viewHolder, position)) {
-            emptyViewHolders.remove(position);
+        for (int i = 0, size = emptyViewHolders.size(); i < size; i++) {
+            ViewHolder viewHolder = emptyViewHolders.valueAt(i);
+            if (viewHolder.getItemViewType() != viewType) {
+                continue;
+            }
+            int position = emptyViewHolders.keyAt(i);
+            if (bindDynamicViewHolder(viewHolder, position)) {
+                emptyViewHolders.remove(position);
+            }
+            return;
         }
     }
 
@@ -283,6 +1520,10 @@ public class Viewpager2Adapter extends RecyclerView.Adapter<Viewpager2Adapter.Vi
      */
     @Override
     public void onViewRecycled(@NonNull ViewHolder holder) {
+        Viewpager2Transformer transformer = getPageTransformer();
+        if (transformer != null) {
+            transformer.unregisterPage(holder.itemView);
+        }
         if (getItemIsChild()) {
             return;
         }
@@ -290,19 +1531,36 @@ public class Viewpager2Adapter extends RecyclerView.Adapter<Viewpager2Adapter.Vi
         if (frameLayout == null) {
             return;
         }
-        if (recycledViewHolders == null) {
-            recycledViewHolders = new SparseArray<>();
+        getRecycledViewHolders(holder.getItemViewType()).put(holder.holderId, holder);
+    }
+
+    // 移除已回收 viewHolder 的 子view, 动态模式下放回闲置队列
+    private void releaseViewHolder(@NonNull ViewHolder holder) {
+        ((FrameLayout) holder.itemView).removeAllViews();
+        if (!getItemIsChild() && holder.holderId != -1) {
+            getIdleHolderIds(mViewTypes.get(holder.holderId)).add(holder.holderId);
         }
-        recycledViewHolders.put(holder.holderId, holder);
+        holder.holderId = -1;
+    }
+
+    @Nullable
+    private Viewpager2Transformer getPageTransformer() {
+        ViewPager2.PageTransformer transformer = mViewpager2.getPageTransformer();
+        return transformer instanceof Viewpager2Transformer ? (Viewpager2Transformer) transformer : null;
     }
 
     @Override
     public void onViewAttachedToWindow(@NonNull ViewHolder holder) {
-        if (getItemIsChild() || recycledViewHolders == null
-                || recycledViewHolders.indexOfKey(holder.holderId) < 0) {
+        Viewpager2Transformer transformer = getPageTransformer();
+        if (transformer != null) {
+            transformer.registerPage(holder.itemView);
+        }
+        SparseArray<ViewHolder> recycledHolders = getItemIsChild() ? null
+                : recycledViewHolders.get(holder.getItemViewType());
+        if (recycledHolders == null || recycledHolders.indexOfKey(holder.holderId) < 0) {
             return;
         }
-        recycledViewHolders.remove(holder.holderId);
+        recycledHolders.remove(holder.holderId);
     }
 
     // 设置 backgroundView 到指定 position 的 itemView
@@ -310,11 +1568,16 @@ public class Viewpager2Adapter extends RecyclerView.Adapter<Viewpager2Adapter.Vi
         if (!isWithBackgroundView()) {
             return;
         }
+        if (isBackgroundLayer()) {
+            backgroundLayerPosition = position;
+            updateBackgroundLayer();
+            return;
+        }
         RecyclerView.ViewHolder holder = mRecyclerView == null ? null
                 : mRecyclerView.findViewHolderForAdapterPosition(position);
         FrameLayout container = holder == null ? null : (FrameLayout) holder.itemView;
         if (container == null) {
-            backgroundViewPosition = position;
+            backgroundViewPosition = getRealPosition(position);
             return;
         }
         FrameLayout backgroundParent = (FrameLayout) backgroundView.getParent();
@@ -330,7 +1593,7 @@ public class Viewpager2Adapter extends RecyclerView.Adapter<Viewpager2Adapter.Vi
     // bindBackgroundView 时, 要插入 backgroundView 的 position 还未创建 viewHolder
     // 此时在 onBindViewHolder 成功后, 绑定 backgroundView 到 viewHolder
     private void initBackgroundView(FrameLayout container, int position) {
-        if (!isWithBackgroundView() || backgroundViewPosition == -1 || backgroundViewPosition != position) {
+        if (!isWithBackgroundView() || isBackgroundLayer() || backgroundViewPosition == -1 || backgroundViewPosition != position) {
             return;
         }
         backgroundViewPosition = -1;
@@ -341,63 +1604,217 @@ public class Viewpager2Adapter extends RecyclerView.Adapter<Viewpager2Adapter.Vi
         container.addView(backgroundView, 0);
     }
 
+    /**
+     * 背景层模式下, 将 backgroundView 对齐到 backgroundLayerPosition 对应的 page
+     * 滑动过程中每帧调用, 仅在 page 尺寸变化时重新布局, 其余只修改 translation
+     * 需注意 backgroundView 不在 page 内, 所以不受 transformer 的 透明度/缩放 等效果影响
+     */
+    void updateBackgroundLayer() {
+        if (!isBackgroundLayer() || backgroundView == null || mRecyclerView == null) {
+            return;
+        }
+        RecyclerView.LayoutManager layoutManager = mRecyclerView.getLayoutManager();
+        View page = layoutManager == null || backgroundLayerPosition < 0 ? null
+                : layoutManager.findViewByPosition(backgroundLayerPosition);
+        if (page == null) {
+            return;
+        }
+        int width = page.getWidth();
+        int height = page.getHeight();
+        if (width == 0 || height == 0) {
+            return;
+        }
+        if (backgroundView.getWidth() != width || backgroundView.getHeight() != height) {
+            backgroundView.measure(
+                    View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY)
+            );
+            backgroundView.layout(0, 0, width, height);
+        }
+        backgroundView.setTranslationX(mRecyclerView.getLeft() + page.getLeft());
+        backgroundView.setTranslationY(mRecyclerView.getTop() + page.getTop());
+    }
+
     // 给 js 端发消息
-    void setPageScrollListener(ReadableMap listeners) {
-        eventListeners = listeners;
+    void setPageScrollListener(@Nullable ReadableMap listeners) {
+        int flags = 0;
+        if (listeners != null) {
+            flags |= isListening(listeners, Viewpager2Manager.EVENT_ON_SCROLL) ? EVENT_PAGE_SCROLL : 0;
+            flags |= isListening(listeners, "onPageScrollStateChanged") ? EVENT_PAGE_SCROLL_STATE_CHANGED : 0;
+            flags |= isListening(listeners, "onPageSelected") ? EVENT_PAGE_SELECTED : 0;
+            flags |= isListening(listeners, "onPageChanged") ? EVENT_PAGE_CHANGED : 0;
+            flags |= isListening(listeners, "onAutoplay") ? EVENT_AUTOPLAY : 0;
+            flags |= isListening(listeners, "onPageVisibilityChanged") ? EVENT_PAGE_VISIBILITY : 0;
+            flags |= isListening(listeners, "onSwipePerf") ? EVENT_SWIPE_PERF : 0;
+        }
+        eventListenerFlags = flags;
+        if ((flags & EVENT_PAGE_VISIBILITY) != 0) {
+            getVisibility().update();
+        }
+    }
+
+    boolean hasEventListener(int eventFlag) {
+        return (eventListenerFlags & eventFlag) != 0;
+    }
+
+    private static boolean isListening(@NonNull ReadableMap listeners, String eventType) {
+        return listeners.hasKey(eventType) && listeners.getBoolean(eventType);
+    }
+
+    // eventFlag 为 EVENT_PAGE_SCROLL_STATE_CHANGED / EVENT_PAGE_SELECTED / EVENT_PAGE_CHANGED
+    void setPageEventsSuppressed(boolean suppressed) {
+        pageEventsSuppressed = suppressed;
     }
 
-    void sendPageScrollEvent(String eventType, int position) {
-        if (!eventListeners.hasKey(eventType) || !eventListeners.getBoolean(eventType)) {
+    // 各 OnPageChangeCallback (可见比例/自动播放/预加载/统计) 在中间跳转期间也应忽略回调
+    boolean isPageEventsSuppressed() {
+        return pageEventsSuppressed;
+    }
+
+    void sendPageScrollEvent(int eventFlag, int position) {
+        if ((eventListenerFlags & eventFlag) == 0 || pageEventsSuppressed) {
             return;
         }
         WritableMap event = Arguments.createMap();
-        event.putString("event", eventType);
-        event.putInt(
-                eventType.equals("onPageScrollStateChanged") ? "state" : "position",
-                position
-        );
+        switch (eventFlag) {
+            case EVENT_PAGE_SCROLL_STATE_CHANGED:
+                event.putString("event", "onPageScrollStateChanged");
+                event.putInt("state", position);
+                break;
+            case EVENT_PAGE_SELECTED:
+                event.putString("event", "onPageSelected");
+                event.putInt("position", position);
+                break;
+            default:
+                event.putString("event", "onPageChanged");
+                event.putInt("position", position);
+                break;
+        }
         event.putBoolean("fake", mViewpager2.isFakeDragging());
         sendEvent(event);
     }
 
+    // 自动播放即将切换到 position, 仅在 js 监听了 onAutoplay 时发送
+    void sendAutoplayEvent(int position) {
+        if ((eventListenerFlags & EVENT_AUTOPLAY) == 0) {
+            return;
+        }
+        WritableMap event = Arguments.createMap();
+        event.putString("event", "onAutoplay");
+        event.putInt("position", position);
+        sendEvent(event);
+    }
+
     void sendEvent(WritableMap event) {
+        long start = perfMonitor == null ? 0 : System.nanoTime();
         mEventEmitter.receiveEvent(mViewpager2.getId(), Viewpager2Manager.EVENT_NAME, event);
+        if (perfMonitor != null) {
+            perfMonitor.addSectionTime(Viewpager2PerfMonitor.SECTION_DISPATCH, System.nanoTime() - start);
+        }
+    }
+
+    void setScrollEventThrottle(int throttle) {
+        scrollEventThrottle = Math.max(0, throttle);
     }
 
     // onPageScroll 通过 RN Event 规范发送, 前端可能使用 animate native
+    // 设置了 scrollEventThrottle 的, 间隔内的事件仅保留最后一次, 到期后发送
     void sendPageScrollEvent(int position, float positionOffset, int positionOffsetPixels) {
-        if (!eventListeners.hasKey(Viewpager2Manager.EVENT_ON_SCROLL)
-                || !eventListeners.getBoolean(Viewpager2Manager.EVENT_ON_SCROLL)) {
+        if ((eventListenerFlags & EVENT_PAGE_SCROLL) == 0 || pageEventsSuppressed) {
+            return;
+        }
+        pendingScrollPosition = position;
+        pendingScrollOffset = positionOffset;
+        pendingScrollOffsetPixels = positionOffsetPixels;
+        pendingScrollFake = mViewpager2.isFakeDragging();
+        long delay = scrollEventThrottle <= 0 ? 0
+                : lastScrollEventTime + scrollEventThrottle - SystemClock.uptimeMillis();
+        if (delay <= 0) {
+            if (scrollEventPending) {
+                mViewpager2.removeCallbacks(scrollEventRunnable);
+            }
+            scrollEventPending = true;
+            flushPageScrollEvent();
+        } else if (!scrollEventPending) {
+            scrollEventPending = true;
+            mViewpager2.postDelayed(scrollEventRunnable, delay);
+        }
+    }
+
+    // 发送节流中尚未发送的 onPageScroll, 滑动停止时也会调用, 以免最终位置晚于 state 事件到达
+    void flushPageScrollEvent() {
+        if (!scrollEventPending) {
             return;
         }
-        mEventDispatcher.dispatchEvent(new PageScrollEvent(
+        mViewpager2.removeCallbacks(scrollEventRunnable);
+        scrollEventPending = false;
+        lastScrollEventTime = SystemClock.uptimeMillis();
+        long start = perfMonitor == null ? 0 : System.nanoTime();
+        mEventDispatcher.dispatchEvent(PageScrollEvent.obtain(
                 mViewpager2.getId(),
-                position,
-                positionOffset,
-                positionOffsetPixels,
-                mViewpager2.isFakeDragging()
+                pendingScrollPosition,
+                pendingScrollOffset,
+                pendingScrollOffsetPixels,
+                pendingScrollFake
         ));
+        if (perfMonitor != null) {
+            perfMonitor.addSectionTime(Viewpager2PerfMonitor.SECTION_DISPATCH, System.nanoTime() - start);
+        }
     }
 
+    // 滑动过程中每帧都会发送, Event 对象从对象池中获取, 分发后回收 (onDispose), 免去每帧创建 Event
+    // 注意: 分发时仍会创建 WritableMap (传递给 js 后即被消费, 无法复用), 仅对合并后实际分发的事件创建
+    // 其他 page 事件 (onPageSelected 等) 按字符串 key 构建 WritableMap, 频率低, 未做复用
     static class PageScrollEvent extends Event<PageScrollEvent> {
-        private final int mPosition;
-        private final float mOffset;
-        private final int mOffsetPixels;
-        private final boolean mFake;
+        private static final Pools.SynchronizedPool<PageScrollEvent> EVENTS_POOL =
+                new Pools.SynchronizedPool<>(3);
+
+        private int mPosition;
+        private float mOffset;
+        private int mOffsetPixels;
+        private boolean mFake;
+
+        static PageScrollEvent obtain(int viewTag, int position, float offset, int offsetPixels, boolean fake) {
+            PageScrollEvent event = EVENTS_POOL.acquire();
+            if (event == null) {
+                event = new PageScrollEvent();
+            }
+            event.init(viewTag, position, offset, offsetPixels, fake);
+            return event;
+        }
+
+        private PageScrollEvent() {
+        }
 
-        PageScrollEvent(int viewTag, int position, float offset, int offsetPixels, boolean fake) {
-            super(viewTag);
+        private void init(int viewTag, int position, float offset, int offsetPixels, boolean fake) {
+            super.init(viewTag);
             mPosition = position;
             mOffset = (Float.isInfinite(offset) || Float.isNaN(offset)) ? 0.0f : offset;
             mOffsetPixels = offsetPixels;
             mFake = fake;
         }
 
+        @Override
+        public void onDispose() {
+            EVENTS_POOL.release(this);
+        }
+
         @Override
         public String getEventName() {
             return Viewpager2Manager.EVENT_ON_SCROLL;
         }
 
+        // js 未及时处理时, 同一个 viewpager 排队中的 onPageScroll 合并, 只分发最新的 offset
+        @Override
+        public boolean canCoalesce() {
+            return true;
+        }
+
+        @Override
+        public short getCoalescingKey() {
+            return 0;
+        }
+
         @Override
         public void dispatch(RCTEventEmitter rctEventEmitter) {
             rctEventEmitter.receiveEvent(getViewTag(), getEventName(), serializeEventData());
@@ -0,0 +1,159 @@
+package com.malacca.viewpager2;
+
+import android.view.View;
+import android.graphics.Rect;
+import androidx.core.view.ViewCompat;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.facebook.react.bridge.LifecycleEventListener;
+import com.facebook.react.uimanager.ThemedReactContext;
+
+import com.github.malacca.widget.ViewPager2;
+
+/**
+ * 自动播放, 在 UI 线程定时切换到下一个 page, 无需 js 参与
+ * 以下情况暂停计时: 拖拽/fakeDrag/惯性滑动中, viewpager 未挂载到窗口, 宿主 activity 进入后台
+ * 到期时 viewpager 不可见的, 跳过本次切换并重新计时
+ */
+class Viewpager2Autoplay extends ViewPager2.OnPageChangeCallback
+        implements Runnable, View.OnAttachStateChangeListener, LifecycleEventListener {
+    private static final int DEFAULT_TIMEOUT = 2500;
+
+    private final ThemedReactContext mReactContext;
+    private final ViewPager2 mViewpager2;
+    private final Viewpager2Adapter mAdapter;
+    private final Rect visibleRect = new Rect();
+
+    private boolean autoplay = false;
+    private boolean stopAtEnd = false;
+    private int timeout = DEFAULT_TIMEOUT;
+
+    private boolean attached;
+    private boolean hostResumed = true;
+    private boolean scrolling = false;
+    private boolean scheduled = false;
+
+    Viewpager2Autoplay(ThemedReactContext reactContext, ViewPager2 viewpager2, Viewpager2Adapter adapter) {
+        mReactContext = reactContext;
+        mViewpager2 = viewpager2;
+        mAdapter = adapter;
+        attached = ViewCompat.isAttachedToWindow(viewpager2);
+        viewpager2.registerOnPageChangeCallback(this);
+        viewpager2.addOnAttachStateChangeListener(this);
+        reactContext.addLifecycleEventListener(this);
+    }
+
+    void setAutoplay(boolean enable) {
+        autoplay = enable;
+        update(true);
+    }
+
+    // 自动播放间隔 (毫秒), 修改后重新计时
+    void setTimeout(int autoplayTimeout) {
+        timeout = autoplayTimeout > 0 ? autoplayTimeout : DEFAULT_TIMEOUT;
+        update(true);
+    }
+
+    // 是否仅沿一个方向播放, 即播放到最后一个后停止
+    void setStopAtEnd(boolean stop) {
+        stopAtEnd = stop;
+    }
+
+    void destroy() {
+        cancel();
+        mViewpager2.unregisterOnPageChangeCallback(this);
+        mViewpager2.removeOnAttachStateChangeListener(this);
+        mReactContext.removeLifecycleEventListener(this);
+    }
+
+    // 根据当前状态 开始/暂停 计时, restart 为 true 时重新开始计时
+    private void update(boolean restart) {
+        boolean running = autoplay && attached && hostResumed && !scrolling;
+        if (!running || restart) {
+            cancel();
+        }
+        if (running && !scheduled) {
+            scheduled = true;
+            mViewpager2.postDelayed(this, timeout);
+        }
+    }
+
+    private void cancel() {
+        if (scheduled) {
+            scheduled = false;
+            mViewpager2.removeCallbacks(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        scheduled = false;
+        int next = getNextItem();
+        if (next == RecyclerView.NO_POSITION) {
+            return;
+        }
+        if (mViewpager2.isShown() && mViewpager2.getGlobalVisibleRect(visibleRect)) {
+            mAdapter.sendAutoplayEvent(mAdapter.getRealPosition(next));
+            // 切换会触发 SETTLING 状态, 在滑动完成后重新计时
+            mViewpager2.setCurrentItem(next, true);
+        }
+        update(false);
+    }
+
+    // loop 模式下总是切换到下一个虚拟 position, 仅沿一个方向的在最后一个真实 item 处停止
+    private int getNextItem() {
+        int count = mAdapter.getRealItemCount();
+        if (count < 2) {
+            return RecyclerView.NO_POSITION;
+        }
+        int current = mViewpager2.getCurrentItem();
+        if (mAdapter.isLooping()) {
+            return stopAtEnd && mAdapter.getRealPosition(current) == count - 1 ? RecyclerView.NO_POSITION : current + 1;
+        }
+        if (current < count - 1) {
+            return current + 1;
+        }
+        return stopAtEnd ? RecyclerView.NO_POSITION : 0;
+    }
+
+    // 拖拽 (包括 fakeDrag) 或 滑动中暂停, 停止后重新计时
+    @Override
+    public void onPageScrollStateChanged(int state) {
+        if (mAdapter.isPageEventsSuppressed()) {
+            return;
+        }
+        scrolling = state != ViewPager2.SCROLL_STATE_IDLE;
+        update(!scrolling);
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View v) {
+        attached = true;
+        update(false);
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View v) {
+        attached = false;
+        update(false);
+    }
+
+    @Override
+    public void onHostResume() {
+        hostResumed = true;
+        update(false);
+    }
+
+    @Override
+    public void onHostPause() {
+        hostResumed = false;
+        update(false);
+    }
+
+    // 宿主 activity 销毁后可能重建 (reactContext 仍在), 仅暂停计时, 释放由 adapter 在 viewpager 销毁时统一处理
+    @Override
+    public void onHostDestroy() {
+        hostResumed = false;
+        update(false);
+    }
+}
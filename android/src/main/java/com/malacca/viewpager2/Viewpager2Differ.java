@@ -0,0 +1,94 @@
+package com.malacca.viewpager2;
+
+import java.util.Set;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * 参考 AsyncListDiffer, 在后台线程计算新旧 key 列表的差异, 完成后回到主线程回调
+ * 多次提交时仅最后一次的结果有效, 之前未完成的计算结果会被丢弃
+ */
+class Viewpager2Differ {
+    interface Callback {
+        void onDiffResult(List<String> newKeys, DiffUtil.DiffResult result);
+    }
+
+    // 所有 viewpager 共用一个后台线程
+    private static Executor diffExecutor;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private int generation = 0;
+
+    private static synchronized Executor getDiffExecutor() {
+        if (diffExecutor == null) {
+            diffExecutor = Executors.newSingleThreadExecutor();
+        }
+        return diffExecutor;
+    }
+
+    /**
+     * oldKeys/newKeys 在计算过程中不可再修改
+     * dirtyKeys: key 未变但数据发生变化的 item, 需要重新渲染
+     * oldTypes/newTypes: 新旧列表各 position 的 viewType, key 未变但类型变化的 item 同样需要重新渲染, 为 null 则不比较
+     */
+    void submit(final List<String> oldKeys, final List<String> newKeys,
+                @Nullable final Set<String> dirtyKeys, @Nullable final List<Integer> oldTypes,
+                @Nullable final List<Integer> newTypes, final Callback callback) {
+        final int runGeneration = ++generation;
+        getDiffExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                    @Override
+                    public int getOldListSize() {
+                        return oldKeys.size();
+                    }
+
+                    @Override
+                    public int getNewListSize() {
+                        return newKeys.size();
+                    }
+
+                    @Override
+                    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                        String key = oldKeys.get(oldItemPosition);
+                        return key != null && key.equals(newKeys.get(newItemPosition));
+                    }
+
+                    @Override
+                    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                        if (dirtyKeys != null && dirtyKeys.contains(newKeys.get(newItemPosition))) {
+                            return false;
+                        }
+                        return oldTypes == null || newTypes == null
+                                || getType(oldTypes, oldItemPosition) == getType(newTypes, newItemPosition);
+                    }
+                });
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (runGeneration == generation) {
+                            callback.onDiffResult(newKeys, result);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private static int getType(List<Integer> types, int position) {
+        Integer type = position < types.size() ? types.get(position) : null;
+        return type == null ? 0 : type;
+    }
+
+    // 丢弃正在计算中的结果
+    void cancel() {
+        generation++;
+    }
+}
@@ -0,0 +1,132 @@
+package com.malacca.viewpager2;
+
+import android.view.Choreographer;
+import android.view.animation.Interpolator;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import com.github.malacca.widget.ViewPager2;
+
+/**
+ * 在 UI 线程按帧驱动 fakeDrag, js 端只需发送一次命令
+ * 1. animateFakeDrag: 结束后发送 animateFakeDragEnd 消息, finished 为 false 说明被中断 (用户拖拽/新的动画/viewpager 销毁)
+ * 2. setCurrentIndex 指定了 duration: 拖拽整数个 page 的距离, 结束后直接对齐到目标 page, 不发送消息
+ */
+class Viewpager2FakeDragAnimator implements Choreographer.FrameCallback {
+    private final ViewPager2 mViewpager2;
+    private final Viewpager2Adapter mAdapter;
+
+    private float distance;
+    private long duration;
+    private Interpolator interpolator;
+    private boolean returnToOrigin;
+    private boolean sendEnd;
+    private int settlePosition;
+
+    private boolean running = false;
+    private long startTime;
+    private float draggedOffset;
+
+    Viewpager2FakeDragAnimator(ViewPager2 viewpager2, Viewpager2Adapter adapter) {
+        mViewpager2 = viewpager2;
+        mAdapter = adapter;
+    }
+
+    /**
+     * distance 为拖拽距离(像素), 与 fakeDragBy 一致, 正值拖向前一页, 负值拖向后一页
+     * returnToOrigin 为 true 时, 前半段拖出, 后半段拖回原位, 可用于提示用户可以滑动
+     */
+    void start(float dragDistance, int dragDuration, @Nullable Interpolator dragInterpolator, boolean returnOrigin) {
+        run(dragDistance, dragDuration, dragInterpolator, returnOrigin, true, -1);
+    }
+
+    /**
+     * 以指定 时长/插值器 滚动到 position, distance 需为当前 item 到 position 的像素距离
+     * 松开模拟手指时的惯性可能会多滑一页, 所以结束后直接对齐到 position
+     */
+    boolean scrollTo(int position, float dragDistance, int dragDuration, @Nullable Interpolator dragInterpolator) {
+        return run(dragDistance, dragDuration, dragInterpolator, false, false, position);
+    }
+
+    private boolean run(float dragDistance, int dragDuration, @Nullable Interpolator dragInterpolator,
+                        boolean returnOrigin, boolean sendEndEvent, int position) {
+        cancel();
+        sendEnd = sendEndEvent;
+        settlePosition = position;
+        if (mViewpager2.isFakeDragging() || !mViewpager2.beginFakeDrag()) {
+            sendEndEvent(false);
+            return false;
+        }
+        distance = dragDistance;
+        duration = Math.max(0, dragDuration);
+        interpolator = dragInterpolator;
+        returnToOrigin = returnOrigin;
+        running = true;
+        startTime = -1;
+        draggedOffset = 0;
+        Choreographer.getInstance().postFrameCallback(this);
+        return true;
+    }
+
+    // 中断正在执行的动画, 松开模拟的手指, 由 viewpager 自行吸附到最近的 page
+    void cancel() {
+        if (!running) {
+            return;
+        }
+        Choreographer.getInstance().removeFrameCallback(this);
+        finish(false);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) {
+            return;
+        }
+        // 用户开始拖拽时 viewpager 会结束 fakeDrag
+        if (!mViewpager2.isFakeDragging()) {
+            running = false;
+            sendEndEvent(false);
+            return;
+        }
+        long now = frameTimeNanos / 1000000;
+        if (startTime == -1) {
+            startTime = now;
+        }
+        float fraction = duration == 0 ? 1f : Math.min(1f, (float) (now - startTime) / duration);
+        float progress = returnToOrigin ? 1f - Math.abs(1f - 2f * fraction) : fraction;
+        if (interpolator != null) {
+            progress = interpolator.getInterpolation(progress);
+        }
+        float offset = distance * progress;
+        mViewpager2.fakeDragBy(offset - draggedOffset);
+        draggedOffset = offset;
+        if (fraction < 1f) {
+            Choreographer.getInstance().postFrameCallback(this);
+        } else {
+            finish(true);
+        }
+    }
+
+    private void finish(boolean finished) {
+        running = false;
+        if (mViewpager2.isFakeDragging()) {
+            mViewpager2.endFakeDrag();
+        }
+        if (finished && settlePosition != -1) {
+            mViewpager2.setCurrentItem(settlePosition, false);
+        }
+        sendEndEvent(finished);
+    }
+
+    private void sendEndEvent(boolean finished) {
+        if (!sendEnd) {
+            return;
+        }
+        WritableMap event = Arguments.createMap();
+        event.putString("event", "animateFakeDragEnd");
+        event.putBoolean("finished", finished);
+        mAdapter.sendEvent(event);
+    }
+}
@@ -0,0 +1,108 @@
+package com.malacca.viewpager2;
+
+import android.view.animation.Interpolator;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableArray;
+
+/**
+ * transformer={{...}} 声明的关键帧效果, 各属性根据 page position 插值
+ * js 端设置时编译为 float 数组, 滑动过程中只做数组查找和插值计算
+ * {
+ *     alpha: {input: [-1, 0, 1], output: [0.5, 1, 0.5], easing: 'easeInOut', clamp: true},
+ *     scale: {...},  // 同时设置 scaleX/scaleY
+ *     translationX: {...},  // 相对于 page 宽度的比例
+ *     pivotX: {...},  // 相对于 page 宽度的比例
+ * }
+ */
+class Viewpager2Keyframes {
+    private static final int PROP_COUNT = Viewpager2Transformer.PROP_COUNT;
+
+    // 与 Viewpager2Transformer.PROP_* 顺序一致
+    private static final String[] PROP_NAMES = {
+            "alpha", "scaleX", "scaleY", "translationX", "translationY",
+            "rotation", "rotationX", "rotationY", "pivotX", "pivotY"
+    };
+
+    // 未设置的属性 inputs[prop] 为 null
+    private final float[][] inputs = new float[PROP_COUNT][];
+    private final float[][] outputs = new float[PROP_COUNT][];
+    private final boolean[] clamps = new boolean[PROP_COUNT];
+    private final Interpolator[] easings = new Interpolator[PROP_COUNT];
+
+    private Viewpager2Keyframes() {
+    }
+
+    // 编译 js 端的关键帧配置, 没有任何有效属性的返回 null
+    @Nullable
+    static Viewpager2Keyframes compile(@Nullable ReadableMap config) {
+        if (config == null) {
+            return null;
+        }
+        Viewpager2Keyframes keyframes = new Viewpager2Keyframes();
+        boolean valid = false;
+        for (int prop = 0; prop < PROP_COUNT; prop++) {
+            String name = PROP_NAMES[prop];
+            if (!config.hasKey(name) && (prop == Viewpager2Transformer.PROP_SCALE_X || prop == Viewpager2Transformer.PROP_SCALE_Y)) {
+                name = "scale";
+            }
+            if (config.hasKey(name) && !config.isNull(name)) {
+                valid = keyframes.compileProp(prop, config.getMap(name)) || valid;
+            }
+        }
+        return valid ? keyframes : null;
+    }
+
+    // input 需为递增数组, 且与 output 长度一致
+    private boolean compileProp(int prop, ReadableMap config) {
+        ReadableArray input = config.hasKey("input") ? config.getArray("input") : null;
+        ReadableArray output = config.hasKey("output") ? config.getArray("output") : null;
+        if (input == null || output == null || input.size() == 0 || input.size() != output.size()) {
+            return false;
+        }
+        int size = input.size();
+        float[] inputValues = new float[size];
+        float[] outputValues = new float[size];
+        for (int i = 0; i < size; i++) {
+            inputValues[i] = (float) input.getDouble(i);
+            outputValues[i] = (float) output.getDouble(i);
+            if (i > 0 && inputValues[i] < inputValues[i - 1]) {
+                return false;
+            }
+        }
+        inputs[prop] = inputValues;
+        outputs[prop] = outputValues;
+        clamps[prop] = !config.hasKey("clamp") || config.getBoolean("clamp");
+        easings[prop] = config.hasKey("easing") ? Viewpager2Transformer.parseInterpolator(config.getString("easing")) : null;
+        return true;
+    }
+
+    boolean hasProp(int prop) {
+        return inputs[prop] != null;
+    }
+
+    // 计算属性在 position 处的值, 需先确认 hasProp
+    float getValue(int prop, float position) {
+        float[] input = inputs[prop];
+        float[] output = outputs[prop];
+        int last = input.length - 1;
+        if (last == 0) {
+            return output[0];
+        }
+        int index = 1;
+        while (index < last && position > input[index]) {
+            index++;
+        }
+        float start = input[index - 1], end = input[index];
+        float fraction = end == start ? 1f : (position - start) / (end - start);
+        // 仅在首尾两段之外 fraction 才会超出 [0,1], clamp=false 时按首尾两段的斜率线性延伸
+        if (clamps[prop]) {
+            fraction = Math.max(0f, Math.min(1f, fraction));
+        }
+        if (easings[prop] != null && fraction >= 0f && fraction <= 1f) {
+            fraction = easings[prop].getInterpolation(fraction);
+        }
+        return output[index - 1] + (output[index] - output[index - 1]) * fraction;
+    }
+}
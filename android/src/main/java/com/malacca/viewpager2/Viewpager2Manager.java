@@ -1,12 +1,17 @@
 package com.malacca.viewpager2;
 
 import java.util.Map;
-import android.os.Handler;
+import java.util.List;
+import java.util.HashSet;
+import java.util.ArrayList;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.animation.Interpolator;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.view.ViewCompat;
 import androidx.recyclerview.widget.RecyclerView;
+import androidx.recyclerview.widget.LinearLayoutManager;
 
 import com.facebook.react.common.MapBuilder;
 import com.facebook.react.bridge.Arguments;
@@ -63,7 +68,14 @@ public class Viewpager2Manager extends ViewGroupManager<ViewPager2> {
             @Override
             public void onPageScrollStateChanged(int state) {
                 super.onPageScrollStateChanged(state);
-                adapter.sendPageScrollEvent("onPageScrollStateChanged", state);
+                if (adapter.isPageEventsSuppressed()) {
+                    return;
+                }
+                if (state == ViewPager2.SCROLL_STATE_IDLE) {
+                    adapter.flushPageScrollEvent();
+                }
+                updatePageLayers(vp, state);
+                adapter.sendPageScrollEvent(Viewpager2Adapter.EVENT_PAGE_SCROLL_STATE_CHANGED, state);
                 if (state == 0) {
                     scrollState = -1;
                     if (scrollPosition != -1) {
@@ -75,17 +87,26 @@ public class Viewpager2Manager extends ViewGroupManager<ViewPager2> {
                 }
             }
 
+            // 以下发送给 js 的均为真实 position (loop 模式下对 item 个数取模)
             @Override
             public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
                 super.onPageScrolled(position, positionOffset, positionOffsetPixels);
-                adapter.sendPageScrollEvent(position, positionOffset, positionOffsetPixels);
+                if (adapter.isPageEventsSuppressed()) {
+                    return;
+                }
+                adapter.updateBackgroundLayer();
+                adapter.sendPageScrollEvent(adapter.getRealPosition(position), positionOffset, positionOffsetPixels);
             }
 
             // 已选中 page, 但还有一段惯性滑动
             @Override
             public void onPageSelected(int position) {
                 super.onPageSelected(position);
-                adapter.sendPageScrollEvent("onPageSelected", position);
+                // jumpNear 跳到目标相邻 page 的中间步骤, 不视为切换
+                if (adapter.isPageEventsSuppressed()) {
+                    return;
+                }
+                adapter.sendPageScrollEvent(Viewpager2Adapter.EVENT_PAGE_SELECTED, adapter.getRealPosition(position));
                 if (scrollState == -1) {
                     onPageChanged(position);
                 } else {
@@ -93,30 +114,47 @@ public class Viewpager2Manager extends ViewGroupManager<ViewPager2> {
                 }
             }
 
-            // 滑动结束, 切换完成
+            // 滑动结束, 切换完成 (loop 模式下移回中间位置时, 真实 position 不变, 仅需移动 backgroundView)
             private void onPageChanged(int position) {
-                if (position == lastPosition) {
+                adapter.bindBackgroundView(position);
+                int realPosition = adapter.getRealPosition(position);
+                if (realPosition == lastPosition) {
                     return;
                 }
-                lastPosition = position;
-                adapter.sendPageScrollEvent("onPageChanged", position);
-                if (!scrollToLastSelectedItem(vp, adapter)) {
-                    adapter.bindBackgroundView(position);
-                }
+                lastPosition = realPosition;
+                adapter.sendPageScrollEvent(Viewpager2Adapter.EVENT_PAGE_CHANGED, realPosition);
+                adapter.updateVisibleWindow(realPosition);
             }
         });
         return vp;
     }
 
+    // 拖拽/惯性滑动时, 有 alpha/scale 等效果的 transformer 将可见 page 提升为硬件层
+    private static void updatePageLayers(ViewPager2 view, int state) {
+        Viewpager2Transformer transformer = (Viewpager2Transformer) view.getPageTransformer();
+        if (transformer != null) {
+            transformer.setLayersPromoted(state != ViewPager2.SCROLL_STATE_IDLE);
+        }
+    }
+
     // 减少不必要通信, 指定需要监听的回调
     @ReactProp(name = "listeners")
-    public void setListeners(ViewPager2 view, ReadableMap config) {
+    public void setListeners(ViewPager2 view, @Nullable ReadableMap config) {
         final Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
         if (adapter != null) {
             adapter.setPageScrollListener(config);
         }
     }
 
+    // onPageScroll 事件的最小间隔 (毫秒), 与 ScrollView 的 scrollEventThrottle 相同, 0 为不限制
+    @ReactProp(name = "scrollEventThrottle")
+    public void setScrollEventThrottle(ViewPager2 view, int throttle) {
+        Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+        if (adapter != null) {
+            adapter.setScrollEventThrottle(throttle);
+        }
+    }
+
     // 是否直接使用子 view, 不可中途修改
     @ReactProp(name = "itemIsChild")
     public void setItemIsChild(ViewPager2 view, boolean itemIsChild) {
@@ -136,10 +174,32 @@ public class Viewpager2Manager extends ViewGroupManager<ViewPager2> {
         }
     }
 
+    // backgroundView 使用独立的背景层, 通过 translation 跟随当前 page, 切换 page 时无需移动 view, 不可中途修改
+    @ReactProp(name = "backgroundLayer")
+    public void setBackgroundLayer(ViewPager2 view, boolean backgroundLayer) {
+        Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+        if (adapter != null) {
+            adapter.setBackgroundLayer(backgroundLayer);
+        }
+    }
+
+    // 使用 key 标识 item (ViewPagerList 设置了 keyExtractor), 不可中途修改
+    // 开启后 adapter 提供 stableId, 插入/删除/更新数据时仅 key 发生变化的 page 需要 js 重新渲染
+    @ReactProp(name = "stableKeys")
+    public void setStableKeys(ViewPager2 view, boolean stableKeys) {
+        Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+        if (adapter != null && adapter.setStableKeys(stableKeys)) {
+            // setHasStableIds 只能在 adapter 没有 observer 时调用, 所以先卸载再重新挂载
+            view.setAdapter(null);
+            adapter.setHasStableIds(true);
+            view.setAdapter(adapter);
+        }
+    }
+
     // 在滑动到第一个或最后一个时 不显示水波纹效果
     @ReactProp(name = "disableWave")
     public void setDisableWave(ViewPager2 view, boolean disableWave) {
-        RecyclerView recyclerView = (RecyclerView) view.getChildAt(0);
+        RecyclerView recyclerView = getRecyclerView(view);
         recyclerView.setOverScrollMode(disableWave ? View.OVER_SCROLL_NEVER : View.OVER_SCROLL_ALWAYS);
     }
 
@@ -158,7 +218,91 @@ public class Viewpager2Manager extends ViewGroupManager<ViewPager2> {
     // 离屏预加载个数 (使用子view的情况, 可中途修改)
     @ReactProp(name = "offscreenPageLimit", defaultInt = ViewPager2.OFFSCREEN_PAGE_LIMIT_DEFAULT)
     public void setOffscreenPageLimit(ViewPager2 view, int limit) {
-        view.setOffscreenPageLimit(limit == 0 ? ViewPager2.OFFSCREEN_PAGE_LIMIT_DEFAULT : limit);
+        Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+        if (adapter != null) {
+            adapter.setOffscreenPageLimit(limit == 0 ? ViewPager2.OFFSCREEN_PAGE_LIMIT_DEFAULT : limit);
+        }
+    }
+
+    // onPageVisibilityChanged 的可见比例阈值, 如 [0, 0.5, 1], page 可见比例跨越阈值时通知 js
+    @ReactProp(name = "visibilityThresholds")
+    public void setVisibilityThresholds(ViewPager2 view, @Nullable ReadableArray thresholds) {
+        Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+        if (adapter != null) {
+            adapter.getVisibility().setThresholds(thresholds);
+        }
+    }
+
+    // 开启性能统计, 可通过 getPerfStats 命令获取, 或监听 onSwipePerf 获取每次滑动的数据
+    @ReactProp(name = "perfMonitor")
+    public void setPerfMonitor(ViewPager2 view, boolean enable) {
+        Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+        if (adapter != null) {
+            adapter.setPerfMonitor(enable);
+        }
+    }
+
+    // 动态模式下根据复用 view 的使用情况, 自动通知 js 补充/释放 子view, 命中统计可通过 getPoolStats 命令获取
+    @ReactProp(name = "adaptivePool")
+    public void setAdaptivePool(ViewPager2 view, boolean enable) {
+        Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+        if (adapter != null) {
+            adapter.getPoolMonitor().setAdaptive(enable);
+        }
+    }
+
+    // 快速滑动时离屏预加载个数的上限, 大于 offscreenPageLimit 时启用, 根据滑动速度在两者之间调整
+    @ReactProp(name = "offscreenPageLimitMax")
+    public void setOffscreenPageLimitMax(ViewPager2 view, int limit) {
+        Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+        if (adapter != null) {
+            adapter.getRenderAhead().setMaxLimit(limit);
+        }
+    }
+
+    // 循环展示, native 端使用足够大的虚拟 item 个数实现, 无需首尾复制 page
+    @ReactProp(name = "loop")
+    public void setLoop(ViewPager2 view, boolean loop) {
+        Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+        if (adapter != null) {
+            adapter.setLoop(loop);
+        }
+    }
+
+    // 自动播放, 由 native 定时切换, 拖拽/不可见/进入后台时暂停
+    @ReactProp(name = "autoplay")
+    public void setAutoplay(ViewPager2 view, boolean autoplay) {
+        Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+        if (adapter != null) {
+            adapter.getAutoplay().setAutoplay(autoplay);
+        }
+    }
+
+    // 自动播放间隔 (毫秒)
+    @ReactProp(name = "autoplayTimeout")
+    public void setAutoplayTimeout(ViewPager2 view, int timeout) {
+        Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+        if (adapter != null) {
+            adapter.getAutoplay().setTimeout(timeout);
+        }
+    }
+
+    // 自动播放是否仅沿一个方向 (播放到最后一个后停止)
+    @ReactProp(name = "autoplayDirection")
+    public void setAutoplayDirection(ViewPager2 view, boolean direction) {
+        Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+        if (adapter != null) {
+            adapter.getAutoplay().setStopAtEnd(direction);
+        }
+    }
+
+    // itemIsChild 模式下, 当前 page 前后各 windowSize 个以外的 page, 由 js 卸载其内容以释放内存
+    @ReactProp(name = "windowSize")
+    public void setWindowSize(ViewPager2 view, int windowSize) {
+        Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+        if (adapter != null) {
+            adapter.setWindowSize(windowSize);
+        }
     }
 
     // 方向
@@ -184,15 +328,22 @@ public class Viewpager2Manager extends ViewGroupManager<ViewPager2> {
         boolean isHorizontal = view.getOrientation() == ViewPager2.ORIENTATION_HORIZONTAL;
         float oldPadding = transformer != null ? transformer.getPagePadding() : 0f;
 
-        String type = config.hasKey("type") ? config.getString("type") : null;
-        type = type != null && Viewpager2Transformer.supportTransformer(type) ? type : null;
+        int type = Viewpager2Transformer.getTransformerType(config.hasKey("type") ? config.getString("type") : null);
+        Viewpager2Keyframes keyframes = null;
+        if (type == Viewpager2Transformer.TYPE_KEYFRAMES) {
+            keyframes = Viewpager2Keyframes.compile(config.hasKey("keyframes") ? config.getMap("keyframes") : null);
+            if (keyframes == null) {
+                type = Viewpager2Transformer.TYPE_NONE;
+            }
+        }
         // 使用默认转换效果
-        if (type == null) {
+        if (type == Viewpager2Transformer.TYPE_NONE) {
             if (transformer != null) {
                 recordSelectedItem(view);
                 if (oldPadding != 0f) {
                     updateRecyclerPadding(view, 0, isHorizontal);
                 }
+                transformer.setLayersPromoted(false);
                 transformer.resetTransformViews();
                 view.setPageTransformer(null);
             }
@@ -216,6 +367,10 @@ public class Viewpager2Manager extends ViewGroupManager<ViewPager2> {
                 ? PixelUtil.toPixelFromDIP(config.getInt("margin"))
                 : -1f
         );
+        transformer.setHardwareLayer(
+                !config.hasKey("hardwareLayer") || config.getBoolean("hardwareLayer"),
+                config.hasKey("layerBudget") ? (float) config.getDouble("layerBudget") : -1f
+        );
         float padding = 0f;
         if (Viewpager2Transformer.supportPadding(type)) {
             transformer.setPagePadding(padding = config.hasKey("padding")
@@ -227,15 +382,31 @@ public class Viewpager2Manager extends ViewGroupManager<ViewPager2> {
             updateRecyclerPadding(view, (int) padding, isHorizontal);
         }
         if (!hasTransformer) {
+            transformer.setKeyframes(keyframes);
+            Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+            transformer.setPerfMonitor(adapter == null ? null : adapter.getPerfMonitor());
             view.setPageTransformer(transformer);
         } else {
             transformer.setPageTransformer(type);
+            transformer.setKeyframes(keyframes);
+            view.requestTransform();
         }
     }
 
+    // viewpager 内部的 recyclerView, 背景层模式下 backgroundView 位于 index 0, 所以不能直接 getChildAt(0)
+    static RecyclerView getRecyclerView(@NonNull ViewPager2 view) {
+        for (int i = view.getChildCount() - 1; i >= 0; i--) {
+            View child = view.getChildAt(i);
+            if (child instanceof RecyclerView) {
+                return (RecyclerView) child;
+            }
+        }
+        return null;
+    }
+
     // 一页显示多个的情况, 通过设置 recyclerView padding 来实现
     private void updateRecyclerPadding(ViewPager2 view, int padding, boolean horizontal) {
-        RecyclerView recyclerView = (RecyclerView) view.getChildAt(0);
+        RecyclerView recyclerView = getRecyclerView(view);
         if (recyclerView.getClipToPadding()) {
             recyclerView.setClipToPadding(false);
         }
@@ -253,84 +424,151 @@ public class Viewpager2Manager extends ViewGroupManager<ViewPager2> {
     /**
      * horizontal 或 transformer 属性变动时, 可能会导致修改后选中 pageItem 与修改前不一致
      * 还有一些些情况 (比如从一屏多个到一屏一个), 虽然修改前后的 pageItem 一致
-     * 但会出现不符合预期的效果, 比如本应一屏一个, 却显示两个, 这种情况通过 FakeDrag 修正
-     * 所以在修改这两个属性前, 记录当前 viewpager 选中的 item
-     * 1. 但转换完成后, 可能会触发 onPageSelected 回调, 在回调中会重新选择记录的 currentItem
-     *   一旦 onPageSelected 被触发, 就会在完成属性转变后立即修正, 此处的 runnable 就会跳过执行
-     * 2. 若未触发 onPageSelected, 会执行这里的 runnable,
-     *   但这里是最为上面方案的兜底措施, 因为这里执行可能会略有延迟
+     * 但会出现不符合预期的效果, 比如本应一屏一个, 却显示两个
+     * 所以在修改这两个属性前, 记录当前 viewpager 选中的 item, 在本次 props 全部更新后统一修正
      */
-    private void recordSelectedItem(final ViewPager2 view) {
-        final Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
-        if (adapter == null || !adapter.setLastSelectedItem()) {
-            return;
+    private void recordSelectedItem(ViewPager2 view) {
+        Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+        if (adapter != null && adapter.lastSelectedItem == -1) {
+            adapter.setLastSelectedItem();
         }
-        new Handler().postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                scrollToLastSelectedItem(view, adapter);
-            }
-        }, 10);
     }
 
-    // horizontal 或 transformer 变动后的修正
-    private boolean scrollToLastSelectedItem(ViewPager2 view, Viewpager2Adapter adapter) {
-        int lastSelectedItem = adapter.lastSelectedItem;
-        if (lastSelectedItem == -1) {
-            return false;
+    // 同一批次的 props 更新完成, 若 horizontal/transformer/padding 有变动, 一次性重新布局并修正选中 item
+    @Override
+    protected void onAfterUpdateTransaction(@NonNull ViewPager2 view) {
+        super.onAfterUpdateTransaction(view);
+        Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+        if (adapter != null && adapter.lastSelectedItem != -1) {
+            restoreSelectedItem(view, adapter);
         }
+    }
+
+    /**
+     * viewpager 的父级为 RN 管理的 view, 不会响应 requestLayout, 这里手动 measure/layout
+     * 先通过 scrollToPositionWithOffset 将记录的 item 对齐到起始位置, 布局完成即为最终状态
+     * 再同步 viewpager 的 currentItem 并重新应用 transformer, 整个过程在当前帧内完成
+     */
+    private void restoreSelectedItem(ViewPager2 view, Viewpager2Adapter adapter) {
+        int selectedItem = adapter.lastSelectedItem;
         adapter.lastSelectedItem = -1;
-        if (lastSelectedItem == view.getCurrentItem()) {
-            // todo
-            // 实测发现, getCurrentItem() 可能返回值总是等于 lastSelectedItem
-            // 实际并不是, 此时 fakeDrag 并不能修正到之前的 lastSelectedItem
-            // 但这个修正仍然是有必要行的, 前面对于一屏多个的可以让其滑动到最终状态
-            // 这可能是 viewpager2 的一个bug, 不晓得是否有其他方式可弥补这个不足, 以达到目的
-            view.beginFakeDrag();
-            view.fakeDragBy(1);
-            view.endFakeDrag();
-        } else {
-            scrollToIndex(view, lastSelectedItem, false);
+        RecyclerView recyclerView = getRecyclerView(view);
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (layoutManager instanceof LinearLayoutManager) {
+            ((LinearLayoutManager) layoutManager).scrollToPositionWithOffset(selectedItem, 0);
+        }
+        layoutNow(view);
+        // selectedItem 为 adapter position, 无需转换
+        view.setCurrentItem(selectedItem, false);
+        view.requestTransform();
+    }
+
+    // 立即 measure/layout, 使 recyclerView 的 滚动/数据 变化在当前帧生效
+    static void layoutNow(@NonNull ViewPager2 view) {
+        int width = view.getWidth();
+        int height = view.getHeight();
+        if (width > 0 && height > 0) {
+            view.measure(
+                    View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY)
+            );
+            view.layout(view.getLeft(), view.getTop(), view.getRight(), view.getBottom());
         }
-        return true;
     }
 
     // 处理 js 端发送的命令
     @Override
     public void receiveCommand(@NonNull final ViewPager2 view, String commandId, @Nullable ReadableArray args) {
-        Viewpager2Adapter adapter = args == null || args.size() < 1 ? null : (Viewpager2Adapter) view.getAdapter();
+        final Viewpager2Adapter adapter = args == null || args.size() < 1 ? null : (Viewpager2Adapter) view.getAdapter();
         if (adapter == null) {
             return;
         }
+        // 与 子view 同一批次的命令 (如挂载后设置 currentIndex), 需基于合并后的 loop 个数执行
+        adapter.flushLoopChanged();
         switch (commandId) {
             case "setCount":
                 int selected = args.size() > 1 ? args.getInt(1) : -1;
-                boolean scrollBefore = selected < adapter.getItemCount();
+                boolean scrollBefore = selected < adapter.getRealItemCount();
                 if (selected != -1 && scrollBefore) {
                     scrollToIndex(view, selected, false);
                 }
-                adapter.setItemCount(args.getInt(0));
+                List<String> keys = readKeys(args, 2);
+                List<Integer> types = readTypes(args, 3);
+                if (types != null) {
+                    adapter.setItemTypes(types);
+                }
+                if (keys != null) {
+                    adapter.setItemKeys(keys);
+                } else {
+                    adapter.setItemCount(args.getInt(0));
+                }
                 if (!scrollBefore) {
                     scrollToIndex(view, selected, false);
                 }
                 break;
             case "insertCount":
-                adapter.insertItemRange(args.getInt(0), args.getInt(1));
+                adapter.insertItemRange(args.getInt(0), args.getInt(1), readKeys(args, 2), readTypes(args, 3));
                 break;
             case "removeCount":
                 adapter.removeItemRange(args.getInt(0), args.getInt(1));
                 break;
+            case "setKeys":
+                // [keys, selected, dirtyKeys, types, id] 整体更新数据, 由 native 在后台线程计算差异后按需更新
+                // 差异应用后发送 keysApplied 消息, js 收到后才切换为新数据, 在此之前 bind 的仍是旧数据的 position
+                final int keysSelected = args.size() > 1 ? args.getInt(1) : -1;
+                final int keysId = args.size() > 4 ? args.getInt(4) : -1;
+                List<String> dirtyKeys = readKeys(args, 2);
+                adapter.diffItemKeys(
+                        readKeys(args, 0),
+                        dirtyKeys == null ? null : new HashSet<>(dirtyKeys),
+                        readTypes(args, 3),
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                WritableMap keysEvent = Arguments.createMap();
+                                keysEvent.putString("event", "keysApplied");
+                                keysEvent.putInt("id", keysId);
+                                adapter.sendEvent(keysEvent);
+                                if (keysSelected != -1) {
+                                    scrollToIndex(view, keysSelected, false);
+                                }
+                            }
+                        }
+                );
+                break;
             case "setCurrentIndex":
-                scrollToIndex(view, args.getInt(0), args.getBoolean(1));
+                // [index, smooth, duration(ms), easing, jumpNear], 后三个参数可选
+                if (args.size() > 2 && args.getBoolean(1)) {
+                    smoothScrollToIndex(view, adapter, args.getInt(0), args.getInt(2),
+                            args.size() > 3 && !args.isNull(3) ? Viewpager2Transformer.parseInterpolator(args.getString(3)) : null,
+                            args.size() > 4 && args.getBoolean(4)
+                    );
+                } else {
+                    scrollToIndex(view, args.getInt(0), args.getBoolean(1));
+                }
                 break;
             case "getCurrentIndex":
                 WritableMap event = Arguments.createMap();
                 event.putString("event", "getCurrentIndex");
                 event.putString("index", args.getString(0));
-                event.putInt("item", view.getCurrentItem());
+                event.putInt("item", adapter.getRealPosition(view.getCurrentItem()));
                 adapter.sendEvent(event);
                 break;
+            case "getPerfStats":
+                // [reset], 未开启 perfMonitor 的返回空数据
+                Viewpager2PerfMonitor monitor = adapter.getPerfMonitor();
+                WritableMap stats = monitor == null ? Arguments.createMap() : monitor.getStats(args.getBoolean(0));
+                stats.putString("event", "perfStats");
+                adapter.sendEvent(stats);
+                break;
+            case "getPoolStats":
+                // [reset], 仅动态模式(ViewPagerList) 有数据
+                WritableMap poolStats = adapter.getPoolMonitor().getStats(args.getBoolean(0));
+                poolStats.putString("event", "poolStats");
+                adapter.sendEvent(poolStats);
+                break;
             case "beginFakeDrag":
+                adapter.getFakeDragAnimator().cancel();
                 view.beginFakeDrag();
                 break;
             case "fakeDragBy":
@@ -339,11 +577,107 @@ public class Viewpager2Manager extends ViewGroupManager<ViewPager2> {
             case "endFakeDrag":
                 view.endFakeDrag();
                 break;
+            case "animateFakeDrag":
+                // [distance(dp), duration(ms), easing, returnToOrigin]
+                adapter.getFakeDragAnimator().start(
+                        PixelUtil.toPixelFromDIP(args.getDouble(0)),
+                        args.size() > 1 ? args.getInt(1) : 0,
+                        args.size() > 2 && !args.isNull(2) ? Viewpager2Transformer.parseInterpolator(args.getString(2)) : null,
+                        args.size() > 3 && args.getBoolean(3)
+                );
+                break;
+        }
+    }
+
+    // stableKeys 模式下, js 端附带的 item key 数组
+    @Nullable
+    private static List<String> readKeys(@NonNull ReadableArray args, int index) {
+        if (args.size() <= index || args.isNull(index)) {
+            return null;
+        }
+        ReadableArray array = args.getArray(index);
+        List<String> keys = new ArrayList<>(array.size());
+        for (int i = 0, size = array.size(); i < size; i++) {
+            keys.add(array.isNull(i) ? null : array.getString(i));
         }
+        return keys;
     }
 
+    // 使用了多种 viewType 时, js 端附带的各 item 的 type 数组
+    @Nullable
+    private static List<Integer> readTypes(@NonNull ReadableArray args, int index) {
+        if (args.size() <= index || args.isNull(index)) {
+            return null;
+        }
+        ReadableArray array = args.getArray(index);
+        List<Integer> types = new ArrayList<>(array.size());
+        for (int i = 0, size = array.size(); i < size; i++) {
+            types.add(array.isNull(i) ? 0 : array.getInt(i));
+        }
+        return types;
+    }
+
+    // index 为 js 端的真实 index
+    // 跳转前先中断正在执行的 fakeDrag 动画, 避免两者争夺滚动位置
     private void scrollToIndex(@NonNull ViewPager2 view, int index, boolean smoothScroll) {
-        view.setCurrentItem(index, smoothScroll);
+        Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+        if (adapter == null) {
+            view.setCurrentItem(index, smoothScroll);
+            return;
+        }
+        adapter.getFakeDragAnimator().cancel();
+        adapter.flushLoopChanged();
+        view.setCurrentItem(adapter.getAdapterPosition(index), smoothScroll);
+    }
+
+    /**
+     * 平滑滚动到 index, duration > 0 时由 fakeDrag 动画驱动, 可指定时长和插值器
+     * jumpNear 为 true 时, 距离超过一页的先直接跳到目标的相邻 page, 只平滑滚动最后一页
+     * 这样中间经过的 page 不会被 bind, 也不会执行 transformer, 跳到相邻 page 的过程也不会通知 js
+     */
+    private void smoothScrollToIndex(@NonNull ViewPager2 view, @NonNull Viewpager2Adapter adapter, int index,
+                                     int duration, @Nullable Interpolator interpolator, boolean jumpNear) {
+        adapter.getFakeDragAnimator().cancel();
+        int target = adapter.getAdapterPosition(index);
+        int current = view.getCurrentItem();
+        if (target < 0 || target >= adapter.getItemCount() || target == current) {
+            return;
+        }
+        if (jumpNear && Math.abs(target - current) > 1) {
+            current = target > current ? target - 1 : target + 1;
+            adapter.setPageEventsSuppressed(true);
+            view.setCurrentItem(current, false);
+            layoutNow(view);
+            adapter.setPageEventsSuppressed(false);
+        }
+        int pageSize = getPageSize(view);
+        // fakeDragBy 正值拖向前一页, 水平 RTL 布局下 viewpager2 会反转 fakeDragBy 的方向, 这里需再反转回来
+        float distance = (current - target) * pageSize;
+        if (view.getOrientation() == ViewPager2.ORIENTATION_HORIZONTAL
+                && ViewCompat.getLayoutDirection(view) == ViewCompat.LAYOUT_DIRECTION_RTL) {
+            distance = -distance;
+        }
+        if (duration <= 0 || pageSize <= 0
+                || !adapter.getFakeDragAnimator().scrollTo(target, distance, duration, interpolator)) {
+            view.setCurrentItem(target, true);
+        }
+    }
+
+    // 一个 page 的尺寸, 即 recyclerView 去除 padding (一屏显示多个时) 后的尺寸
+    private static int getPageSize(@NonNull ViewPager2 view) {
+        RecyclerView recyclerView = getRecyclerView(view);
+        return view.getOrientation() == ViewPager2.ORIENTATION_HORIZONTAL
+                ? recyclerView.getWidth() - recyclerView.getPaddingLeft() - recyclerView.getPaddingRight()
+                : recyclerView.getHeight() - recyclerView.getPaddingTop() - recyclerView.getPaddingBottom();
+    }
+
+    @Override
+    public void onDropViewInstance(@NonNull ViewPager2 view) {
+        super.onDropViewInstance(view);
+        Viewpager2Adapter adapter = (Viewpager2Adapter) view.getAdapter();
+        if (adapter != null) {
+            adapter.onDropViewInstance();
+        }
     }
 
     @Override
@@ -0,0 +1,174 @@
+package com.malacca.viewpager2;
+
+import android.os.Build;
+import android.view.Display;
+import android.view.Choreographer;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import com.github.malacca.widget.ViewPager2;
+
+/**
+ * 性能统计 (perfMonitor 开启后), 以一次滑动 (离开 IDLE 到回到 IDLE) 为单位
+ * 通过 Choreographer 记录滑动过程中每帧的间隔, 统计 掉帧数/最长帧
+ * 同时记录 bind / transformer / 发送消息 各自的耗时, 用于定位卡顿来源
+ * 滑动结束后发送 onSwipePerf 消息 (js 监听了的话), 累计数据通过 getPerfStats 命令获取
+ */
+class Viewpager2PerfMonitor extends ViewPager2.OnPageChangeCallback implements Choreographer.FrameCallback {
+    static final int SECTION_BIND = 0;
+    static final int SECTION_TRANSFORM = 1;
+    static final int SECTION_DISPATCH = 2;
+    private static final int SECTION_COUNT = 3;
+    private static final String[] SECTION_NAMES = {"bind", "transform", "dispatch"};
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    private static class Stats {
+        int swipes;
+        int frames;
+        int droppedFrames;
+        long longestFrame;
+        long duration;
+        final long[] sectionTimes = new long[SECTION_COUNT];
+        final int[] sectionCounts = new int[SECTION_COUNT];
+
+        void reset() {
+            swipes = frames = droppedFrames = 0;
+            longestFrame = duration = 0;
+            for (int i = 0; i < SECTION_COUNT; i++) {
+                sectionTimes[i] = 0;
+                sectionCounts[i] = 0;
+            }
+        }
+
+        void add(Stats stats) {
+            swipes += stats.swipes;
+            frames += stats.frames;
+            droppedFrames += stats.droppedFrames;
+            longestFrame = Math.max(longestFrame, stats.longestFrame);
+            duration += stats.duration;
+            for (int i = 0; i < SECTION_COUNT; i++) {
+                sectionTimes[i] += stats.sectionTimes[i];
+                sectionCounts[i] += stats.sectionCounts[i];
+            }
+        }
+
+        // 时间单位为毫秒
+        WritableMap toMap() {
+            WritableMap map = Arguments.createMap();
+            map.putInt("swipes", swipes);
+            map.putInt("frames", frames);
+            map.putInt("droppedFrames", droppedFrames);
+            map.putDouble("longestFrame", longestFrame / NANOS_PER_MILLI);
+            map.putDouble("duration", duration / NANOS_PER_MILLI);
+            for (int i = 0; i < SECTION_COUNT; i++) {
+                map.putDouble(SECTION_NAMES[i] + "Time", sectionTimes[i] / NANOS_PER_MILLI);
+                map.putInt(SECTION_NAMES[i] + "Count", sectionCounts[i]);
+            }
+            return map;
+        }
+    }
+
+    private final ViewPager2 mViewpager2;
+    private final Viewpager2Adapter mAdapter;
+    // swipe 为进行中的滑动, lastSwipe 为最近一次完成的滑动, total 为累计 (含滑动之外的 bind 等耗时)
+    private final Stats swipe = new Stats();
+    private final Stats lastSwipe = new Stats();
+    private final Stats total = new Stats();
+
+    private boolean swiping = false;
+    private long swipeStartTime;
+    private long lastFrameTime;
+    private long frameInterval;
+
+    Viewpager2PerfMonitor(ViewPager2 viewpager2, Viewpager2Adapter adapter) {
+        mViewpager2 = viewpager2;
+        mAdapter = adapter;
+        viewpager2.registerOnPageChangeCallback(this);
+    }
+
+    void destroy() {
+        mViewpager2.unregisterOnPageChangeCallback(this);
+        if (swiping) {
+            swiping = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    // 记录一段耗时 (纳秒), 滑动之外的直接计入累计数据
+    void addSectionTime(int section, long nanos) {
+        Stats stats = swiping ? swipe : total;
+        stats.sectionTimes[section] += nanos;
+        stats.sectionCounts[section]++;
+    }
+
+    // 累计数据 及 最近一次滑动的数据, reset 为 true 时获取后清空
+    WritableMap getStats(boolean reset) {
+        WritableMap map = Arguments.createMap();
+        map.putMap("total", total.toMap());
+        map.putMap("lastSwipe", lastSwipe.toMap());
+        if (reset) {
+            total.reset();
+            lastSwipe.reset();
+        }
+        return map;
+    }
+
+    @Override
+    public void onPageScrollStateChanged(int state) {
+        if (mAdapter.isPageEventsSuppressed()) {
+            return;
+        }
+        if (state != ViewPager2.SCROLL_STATE_IDLE) {
+            if (!swiping) {
+                startSwipe();
+            }
+        } else if (swiping) {
+            endSwipe();
+        }
+    }
+
+    private void startSwipe() {
+        swiping = true;
+        swipe.reset();
+        swipeStartTime = System.nanoTime();
+        lastFrameTime = 0;
+        // View.getDisplay 需要 API 17
+        Display display = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 ? mViewpager2.getDisplay() : null;
+        float refreshRate = display == null ? 0f : display.getRefreshRate();
+        frameInterval = (long) (1000000000L / (refreshRate > 0f ? refreshRate : DEFAULT_REFRESH_RATE));
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    private void endSwipe() {
+        swiping = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+        swipe.swipes = 1;
+        swipe.duration = System.nanoTime() - swipeStartTime;
+        total.add(swipe);
+        lastSwipe.reset();
+        lastSwipe.add(swipe);
+        if (mAdapter.hasEventListener(Viewpager2Adapter.EVENT_SWIPE_PERF)) {
+            WritableMap event = swipe.toMap();
+            event.putString("event", "onSwipePerf");
+            mAdapter.sendEvent(event);
+        }
+    }
+
+    // 相邻两帧的间隔超出刷新周期的, 按超出的周期数计为掉帧
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!swiping) {
+            return;
+        }
+        if (lastFrameTime > 0) {
+            long frameTime = frameTimeNanos - lastFrameTime;
+            swipe.frames++;
+            swipe.longestFrame = Math.max(swipe.longestFrame, frameTime);
+            swipe.droppedFrames += Math.max(0, Math.round((double) frameTime / frameInterval) - 1);
+        }
+        lastFrameTime = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+}
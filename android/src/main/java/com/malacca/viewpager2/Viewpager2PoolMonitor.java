@@ -0,0 +1,110 @@
+package com.malacca.viewpager2;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import com.github.malacca.widget.ViewPager2;
+
+/**
+ * 动态模式(ViewPagerList) 复用 view 的命中统计, 可通过 getPoolStats 命令获取
+ * 1. idleHits: 使用 js 预先创建(或已释放)的闲置 子view
+ * 2. recycledHits: 复用已回收 viewHolder 的 子view
+ * 3. misses: 无可用 子view, 需等待 js 临时创建 (page 会短暂空白)
+ * 4. peakHolders: 同时占用的 子view 个数峰值 (含 recyclerView 离屏缓存)
+ * adaptivePool 开启后, 闲置 子view 耗尽时提前通知 js 补充, 停止滑动一段时间后释放超出所需的 子view
+ */
+class Viewpager2PoolMonitor extends ViewPager2.OnPageChangeCallback implements Runnable {
+    // 停止滑动后多久检查释放 (毫秒)
+    private static final long RELEASE_DELAY = 10000;
+
+    private final ViewPager2 mViewpager2;
+    private final Viewpager2Adapter mAdapter;
+    private boolean adaptive = false;
+
+    private int idleHits;
+    private int recycledHits;
+    private int misses;
+    private int peakHolders;
+    private int grown;
+    private int released;
+
+    Viewpager2PoolMonitor(ViewPager2 viewpager2, Viewpager2Adapter adapter) {
+        mViewpager2 = viewpager2;
+        mAdapter = adapter;
+        viewpager2.registerOnPageChangeCallback(this);
+    }
+
+    void setAdaptive(boolean enable) {
+        adaptive = enable;
+        mViewpager2.removeCallbacks(this);
+        if (adaptive && mViewpager2.getScrollState() == ViewPager2.SCROLL_STATE_IDLE) {
+            mViewpager2.postDelayed(this, RELEASE_DELAY);
+        }
+    }
+
+    boolean isAdaptive() {
+        return adaptive;
+    }
+
+    void destroy() {
+        mViewpager2.unregisterOnPageChangeCallback(this);
+        mViewpager2.removeCallbacks(this);
+    }
+
+    void onIdleHit() {
+        idleHits++;
+    }
+
+    void onRecycledHit() {
+        recycledHits++;
+    }
+
+    void onMiss() {
+        misses++;
+    }
+
+    void onGrow(int count) {
+        grown += count;
+    }
+
+    void updatePeak(int holders) {
+        peakHolders = Math.max(peakHolders, holders);
+    }
+
+    WritableMap getStats(boolean reset) {
+        WritableMap map = Arguments.createMap();
+        map.putInt("idleHits", idleHits);
+        map.putInt("recycledHits", recycledHits);
+        map.putInt("misses", misses);
+        map.putInt("peakHolders", peakHolders);
+        map.putInt("grown", grown);
+        map.putInt("released", released);
+        map.putInt("poolSize", mAdapter.getPoolSize());
+        map.putInt("activeHolders", mAdapter.getActiveHolderCount());
+        map.putBoolean("adaptive", adaptive);
+        if (reset) {
+            idleHits = recycledHits = misses = grown = released = 0;
+            peakHolders = mAdapter.getActiveHolderCount();
+        }
+        return map;
+    }
+
+    @Override
+    public void onPageScrollStateChanged(int state) {
+        if (mAdapter.isPageEventsSuppressed()) {
+            return;
+        }
+        mViewpager2.removeCallbacks(this);
+        if (adaptive && state == ViewPager2.SCROLL_STATE_IDLE) {
+            mViewpager2.postDelayed(this, RELEASE_DELAY);
+        }
+    }
+
+    // 停止滑动 RELEASE_DELAY 后仍未再滑动, 释放超出所需的闲置 子view
+    @Override
+    public void run() {
+        if (adaptive) {
+            released += mAdapter.releaseIdleViewHolders();
+        }
+    }
+}
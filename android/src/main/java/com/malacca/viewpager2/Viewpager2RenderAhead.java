@@ -0,0 +1,84 @@
+package com.malacca.viewpager2;
+
+import android.os.SystemClock;
+
+import com.github.malacca.widget.ViewPager2;
+
+/**
+ * 根据滑动速度动态调整离屏预加载个数, 范围为 [offscreenPageLimit, offscreenPageLimitMax]
+ * 快速 拖拽/惯性滑动 时按速度扩大预加载范围, 并提前通知 js 补充复用 view (见 Viewpager2Adapter.setRenderAheadLimit)
+ * 滑动停止后恢复为 offscreenPageLimit, 一次滑动过程中只扩大不缩小, 避免来回 bind
+ * 注意: viewpager2 的离屏个数是对称的 (前后各 limit 个), 无法只向滑动方向扩大
+ * 滑动方向后方的 page 多为刚经过的已绑定 page, 扩大后只是延迟回收, 一般不会重新 bind, 额外开销主要是内存
+ * 只有 复用 view 的补充 (见 Viewpager2Adapter.requestViewHolders) 偏向滑动方向
+ */
+class Viewpager2RenderAhead extends ViewPager2.OnPageChangeCallback {
+    // 预加载未来多长时间内会滑过的 page (毫秒)
+    private static final float LOOKAHEAD_MILLIS = 500f;
+    // 速度的平滑系数, 避免个别帧的抖动导致频繁调整
+    private static final float VELOCITY_SMOOTHING = 0.5f;
+
+    private final ViewPager2 mViewpager2;
+    private final Viewpager2Adapter mAdapter;
+
+    private int maxLimit = 0;
+    private int appliedLimit = -1;
+    private boolean scrolling = false;
+    private float lastScroll = Float.NaN;
+    private long lastScrollTime;
+    // 单位: page/毫秒, 正值为向后滑动
+    private float velocity = 0f;
+
+    Viewpager2RenderAhead(ViewPager2 viewpager2, Viewpager2Adapter adapter) {
+        mViewpager2 = viewpager2;
+        mAdapter = adapter;
+        viewpager2.registerOnPageChangeCallback(this);
+    }
+
+    // 离屏个数上限, 不大于 offscreenPageLimit 的相当于不启用
+    void setMaxLimit(int max) {
+        maxLimit = Math.max(0, max);
+    }
+
+    void destroy() {
+        mViewpager2.unregisterOnPageChangeCallback(this);
+    }
+
+    @Override
+    public void onPageScrollStateChanged(int state) {
+        if (mAdapter.isPageEventsSuppressed()) {
+            return;
+        }
+        scrolling = state != ViewPager2.SCROLL_STATE_IDLE;
+        if (scrolling) {
+            return;
+        }
+        velocity = 0f;
+        lastScroll = Float.NaN;
+        if (appliedLimit != -1) {
+            appliedLimit = -1;
+            mAdapter.setRenderAheadLimit(-1, 0);
+        }
+    }
+
+    @Override
+    public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+        if (!scrolling || mAdapter.isPageEventsSuppressed()) {
+            return;
+        }
+        float scroll = position + positionOffset;
+        long now = SystemClock.uptimeMillis();
+        if (!Float.isNaN(lastScroll) && now > lastScrollTime) {
+            float current = (scroll - lastScroll) / (now - lastScrollTime);
+            velocity += (current - velocity) * VELOCITY_SMOOTHING;
+        }
+        lastScroll = scroll;
+        lastScrollTime = now;
+        int base = mAdapter.getOffscreenPageLimit();
+        int limit = Math.min(maxLimit, base + (int) Math.ceil(Math.abs(velocity) * LOOKAHEAD_MILLIS));
+        if (limit > Math.max(base, appliedLimit)) {
+            appliedLimit = limit;
+            mAdapter.setRenderAheadLimit(limit, velocity > 0 ? 1 : -1);
+        }
+    }
+}
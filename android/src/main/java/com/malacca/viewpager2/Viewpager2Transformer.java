@@ -1,30 +1,116 @@
 package com.malacca.viewpager2;
 
+import java.util.List;
+import java.util.Arrays;
+import java.util.ArrayList;
+
 import android.view.View;
 import android.util.SparseArray;
+import android.view.animation.Interpolator;
+import android.view.animation.LinearInterpolator;
+import android.view.animation.BounceInterpolator;
+import android.view.animation.OvershootInterpolator;
+import android.view.animation.AccelerateInterpolator;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.AccelerateDecelerateInterpolator;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.view.ViewCompat;
 import com.github.malacca.widget.ViewPager2;
 
 public class Viewpager2Transformer implements ViewPager2.PageTransformer {
+    static final int TYPE_NONE = 0;
+    static final int TYPE_CARD = 1;
+    static final int TYPE_ZOOM_OUT = 2;
+    static final int TYPE_DEPTH = 3;
+    static final int TYPE_KEYFRAMES = 4;
+
+    // transformer 会修改的 view 属性
+    static final int PROP_ALPHA = 0;
+    static final int PROP_SCALE_X = 1;
+    static final int PROP_SCALE_Y = 2;
+    static final int PROP_TRANSLATION_X = 3;
+    static final int PROP_TRANSLATION_Y = 4;
+    static final int PROP_ROTATION = 5;
+    static final int PROP_ROTATION_X = 6;
+    static final int PROP_ROTATION_Y = 7;
+    static final int PROP_PIVOT_X = 8;
+    static final int PROP_PIVOT_Y = 9;
+    static final int PROP_COUNT = 10;
+
     private static final float PIVOT_CENTER = 0.5f;
-    private SparseArray<View> pageViews = new SparseArray<>();
+    // 已挂载 (或在 recyclerView 离屏缓存中) 的 page, 由 adapter 在 attach/recycle 时维护, 见 registerPage
+    private final SparseArray<View> pageViews = new SparseArray<>();
+    // 各 page 最后一次设置的属性值 (按 PROP_* 索引), 值未变化的不再重复设置, 避免无谓的重绘
+    private final SparseArray<float[]> pageValues = new SparseArray<>();
+    private float[] transformValues;
     private boolean pageHorizontal;
-    private String pageTransformer;
+    private int pageTransformer;
+    private Viewpager2Keyframes pageKeyframes;
     private float MIN_SCALE = 0.85f;
     private float MIN_ALPHA = 0.85f;
     private float PAGE_PADDING = 0f;
     private float PAGE_MARGIN = 0f;
 
-    static boolean supportTransformer(String transformer) {
-        return transformer.equals("card") || transformer.equals("zoomOut")
-                || transformer.equals("depth");
+    // 滑动过程中将可见 page 提升为硬件层, 每帧只需合成纹理, 无需重绘 page 子树
+    // 已提升 page 的纹理总尺寸不超过 layerBudget (字节), 避免占用过多显存
+    private static final long DEFAULT_LAYER_BUDGET = 32L * 1024 * 1024;
+    private boolean hardwareLayer = true;
+    private long layerBudget = DEFAULT_LAYER_BUDGET;
+    private boolean layersPromoted = false;
+
+    // 开启了 perfMonitor 的, 统计 transformPage 的耗时
+    private Viewpager2PerfMonitor perfMonitor;
+    private final List<View> layerViews = new ArrayList<>();
+
+    // js 端的 transformer 名称转为 TYPE_*, 不支持的返回 TYPE_NONE
+    static int getTransformerType(@Nullable String transformer) {
+        if (transformer == null) {
+            return TYPE_NONE;
+        }
+        switch (transformer) {
+            case "card":
+                return TYPE_CARD;
+            case "zoomOut":
+                return TYPE_ZOOM_OUT;
+            case "depth":
+                return TYPE_DEPTH;
+            case "keyframes":
+                return TYPE_KEYFRAMES;
+            default:
+                return TYPE_NONE;
+        }
     }
 
-    static boolean supportPadding(String transformer) {
-        return transformer.equals("card");
+    static boolean supportPadding(int transformer) {
+        return transformer == TYPE_CARD || transformer == TYPE_KEYFRAMES;
     }
 
-    Viewpager2Transformer(boolean horizontal, String transformer) {
+    // js 端的 easing 名称转为 Interpolator, 未指定或不支持的返回 null (即线性)
+    @Nullable
+    static Interpolator parseInterpolator(@Nullable String name) {
+        if (name == null) {
+            return null;
+        }
+        switch (name) {
+            case "linear":
+                return new LinearInterpolator();
+            case "easeIn":
+                return new AccelerateInterpolator();
+            case "easeOut":
+                return new DecelerateInterpolator();
+            case "easeInOut":
+                return new AccelerateDecelerateInterpolator();
+            case "bounce":
+                return new BounceInterpolator();
+            case "overshoot":
+                return new OvershootInterpolator();
+            default:
+                return null;
+        }
+    }
+
+    Viewpager2Transformer(boolean horizontal, int transformer) {
         pageHorizontal = horizontal;
         pageTransformer = transformer;
     }
@@ -36,17 +122,25 @@ public class Viewpager2Transformer implements ViewPager2.PageTransformer {
         }
     }
 
-    void setPageTransformer(@NonNull String transformer) {
-        if (!transformer.equals(pageTransformer)) {
+    void setPageTransformer(int transformer) {
+        if (transformer != pageTransformer) {
             pageTransformer = transformer;
             resetTransformViews();
         }
     }
 
+    // 关键帧效果的配置, 修改后复原 view 属性, 未设置的属性保持默认值
+    void setKeyframes(@Nullable Viewpager2Keyframes keyframes) {
+        if (keyframes != pageKeyframes) {
+            pageKeyframes = keyframes;
+            resetTransformViews();
+        }
+    }
+
     void setMinScale(float scale) {
         if (scale < 0) {
             switch (pageTransformer) {
-                case "depth":
+                case TYPE_DEPTH:
                     scale = 0.75f;
                     break;
                 default:
@@ -60,7 +154,7 @@ public class Viewpager2Transformer implements ViewPager2.PageTransformer {
     void setMinAlpha(float alpha) {
         if (alpha < 0) {
             switch (pageTransformer) {
-                case "zoomOut":
+                case TYPE_ZOOM_OUT:
                     alpha = 0.5f;
                     break;
                 default:
@@ -71,6 +165,89 @@ public class Viewpager2Transformer implements ViewPager2.PageTransformer {
         MIN_ALPHA = alpha;
     }
 
+    // budget 单位为 MB, 小于 0 使用默认值
+    void setHardwareLayer(boolean enable, float budget) {
+        hardwareLayer = enable;
+        layerBudget = budget < 0 ? DEFAULT_LAYER_BUDGET : (long) (budget * 1024 * 1024);
+        if (!enable) {
+            setLayersPromoted(false);
+        }
+    }
+
+    // 当前效果是否会修改 alpha/scale/rotation, 仅修改 translation 的, 提升为硬件层并无收益
+    private boolean animatesLayerProperties() {
+        switch (pageTransformer) {
+            case TYPE_CARD:
+                return MIN_SCALE < 1 || MIN_ALPHA < 1;
+            case TYPE_ZOOM_OUT:
+            case TYPE_DEPTH:
+                return true;
+            case TYPE_KEYFRAMES:
+                return pageKeyframes != null && (pageKeyframes.hasProp(PROP_ALPHA)
+                        || pageKeyframes.hasProp(PROP_SCALE_X) || pageKeyframes.hasProp(PROP_SCALE_Y)
+                        || pageKeyframes.hasProp(PROP_ROTATION) || pageKeyframes.hasProp(PROP_ROTATION_X)
+                        || pageKeyframes.hasProp(PROP_ROTATION_Y));
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 开始拖拽/惯性滑动时启用硬件层, 停止后复原
+     * 启用期间在 transformPage 中按需 提升/复原: 仅提升与可视区域重叠的 page, 离屏预加载的 page 不提升 (见 updateLayer)
+     * 只复原由这里提升的 page, page 本身设置了 layerType 的不受影响
+     */
+    void setLayersPromoted(boolean promote) {
+        if (promote == layersPromoted) {
+            return;
+        }
+        layersPromoted = promote;
+        if (promote) {
+            return;
+        }
+        for (int i = 0, size = layerViews.size(); i < size; i++) {
+            layerViews.get(i).setLayerType(View.LAYER_TYPE_NONE, null);
+        }
+        layerViews.clear();
+    }
+
+    // page 进入可视区域时提升, 离开时复原, position 与 transformPage 相同
+    // 一屏显示多个 (padding>0) 时, 两侧 page 露出的部分也算可见
+    private void updateLayer(View view, float position) {
+        if (!layersPromoted) {
+            return;
+        }
+        int pageSize = pageHorizontal ? view.getWidth() : view.getHeight();
+        if (pageSize > 0 && Math.abs(position) < 1 + getPagePadding() / pageSize) {
+            promoteLayer(view);
+        } else if (layerViews.remove(view)) {
+            view.setLayerType(View.LAYER_TYPE_NONE, null);
+        }
+    }
+
+    private void promoteLayer(View view) {
+        if (!hardwareLayer || !animatesLayerProperties() || !ViewCompat.isAttachedToWindow(view)
+                || view.getLayerType() != View.LAYER_TYPE_NONE
+                || getLayerBytes(view) + getPromotedBytes() > layerBudget) {
+            return;
+        }
+        view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        layerViews.add(view);
+    }
+
+    private static long getLayerBytes(View view) {
+        return (long) view.getWidth() * view.getHeight() * 4;
+    }
+
+    // 已提升 page 的纹理总尺寸, 同时提升的一般只有 2~3 个
+    private long getPromotedBytes() {
+        long bytes = 0;
+        for (int i = 0, size = layerViews.size(); i < size; i++) {
+            bytes += getLayerBytes(layerViews.get(i));
+        }
+        return bytes;
+    }
+
     void setPageMargin(float margin) {
         PAGE_MARGIN = Math.max(0, margin);
     }
@@ -83,47 +260,174 @@ public class Viewpager2Transformer implements ViewPager2.PageTransformer {
         return supportPadding(pageTransformer) ? PAGE_PADDING : 0f;
     }
 
+    // page 挂载到 viewpager
+    void registerPage(@NonNull View view) {
+        int viewId = view.getId();
+        if (pageViews.indexOfKey(viewId) < 0) {
+            pageViews.put(viewId, view);
+        }
+    }
+
+    // page 被回收, 复原其属性后移除, 回收的 page 可能被用于其他 position 甚至其他 viewpager
+    void unregisterPage(@NonNull View view) {
+        int viewId = view.getId();
+        if (pageViews.indexOfKey(viewId) < 0) {
+            return;
+        }
+        resetTransformView(view);
+        if (layerViews.remove(view)) {
+            view.setLayerType(View.LAYER_TYPE_NONE, null);
+        }
+        pageViews.remove(viewId);
+        pageValues.remove(viewId);
+    }
+
     // 修改 horizontal 或 transformer, 先复原 view 属性
     void resetTransformViews() {
-        View view;
         for(int i = 0, size = pageViews.size(); i < size; i++) {
-            view = pageViews.valueAt(i);
-            if (view.getAlpha() != 1f) {
-                view.setAlpha(1f);
-            }
-            if (view.getScaleX() != 1f) {
-                view.setScaleX(1f);
-            }
-            if (view.getScaleY() != 1f) {
-                view.setScaleY(1f);
-            }
-            if (view.getTranslationX() != 0f) {
-                view.setTranslationX(0f);
-            }
-            if (view.getTranslationY() != 0f) {
-                view.setTranslationY(0f);
-            }
-            view.setPivotX((float) view.getWidth() / 2);
-            view.setPivotY((float) view.getHeight() / 2);
+            resetTransformView(pageViews.valueAt(i));
+        }
+        for (int i = 0, size = pageValues.size(); i < size; i++) {
+            Arrays.fill(pageValues.valueAt(i), Float.NaN);
+        }
+    }
+
+    private static void resetTransformView(View view) {
+        if (view.getAlpha() != 1f) {
+            view.setAlpha(1f);
+        }
+        if (view.getScaleX() != 1f) {
+            view.setScaleX(1f);
+        }
+        if (view.getScaleY() != 1f) {
+            view.setScaleY(1f);
         }
+        if (view.getTranslationX() != 0f) {
+            view.setTranslationX(0f);
+        }
+        if (view.getTranslationY() != 0f) {
+            view.setTranslationY(0f);
+        }
+        if (view.getRotation() != 0f) {
+            view.setRotation(0f);
+        }
+        if (view.getRotationX() != 0f) {
+            view.setRotationX(0f);
+        }
+        if (view.getRotationY() != 0f) {
+            view.setRotationY(0f);
+        }
+        view.setPivotX((float) view.getWidth() / 2);
+        view.setPivotY((float) view.getHeight() / 2);
     }
 
     @Override
     public void transformPage(@NonNull View view, float position) {
+        if (perfMonitor == null) {
+            applyTransform(view, position);
+            return;
+        }
+        long start = System.nanoTime();
+        applyTransform(view, position);
+        perfMonitor.addSectionTime(Viewpager2PerfMonitor.SECTION_TRANSFORM, System.nanoTime() - start);
+    }
+
+    void setPerfMonitor(@Nullable Viewpager2PerfMonitor monitor) {
+        perfMonitor = monitor;
+    }
+
+    private void applyTransform(View view, float position) {
+        // 设置 transformer 之前就已挂载的 page, 在这里补充登记
         int viewId = view.getId();
-        if (pageViews.indexOfKey(viewId) < 0) {
-            pageViews.put(viewId, view);
+        registerPage(view);
+        transformValues = pageValues.get(viewId);
+        if (transformValues == null) {
+            transformValues = new float[PROP_COUNT];
+            Arrays.fill(transformValues, Float.NaN);
+            pageValues.put(viewId, transformValues);
         }
         switch (pageTransformer) {
-            case "card":
+            case TYPE_CARD:
                 transformPageCard(view, position);
                 break;
-            case "zoomOut":
+            case TYPE_ZOOM_OUT:
                 transformPageZoomOut(view, position);
                 break;
-            case "depth":
+            case TYPE_DEPTH:
                 transformPageDepth(view, position);
                 break;
+            case TYPE_KEYFRAMES:
+                if (pageKeyframes != null) {
+                    transformPageKeyframes(view, position);
+                }
+                break;
+        }
+        updateLayer(view, position);
+    }
+
+    // 设置当前 page 的属性, 与上次设置的值相同的跳过
+    private void setProperty(View view, int prop, float value) {
+        if (transformValues[prop] == value) {
+            return;
+        }
+        transformValues[prop] = value;
+        switch (prop) {
+            case PROP_ALPHA:
+                view.setAlpha(value);
+                break;
+            case PROP_SCALE_X:
+                view.setScaleX(value);
+                break;
+            case PROP_SCALE_Y:
+                view.setScaleY(value);
+                break;
+            case PROP_TRANSLATION_X:
+                view.setTranslationX(value);
+                break;
+            case PROP_TRANSLATION_Y:
+                view.setTranslationY(value);
+                break;
+            case PROP_ROTATION:
+                view.setRotation(value);
+                break;
+            case PROP_ROTATION_X:
+                view.setRotationX(value);
+                break;
+            case PROP_ROTATION_Y:
+                view.setRotationY(value);
+                break;
+            case PROP_PIVOT_X:
+                view.setPivotX(value);
+                break;
+            case PROP_PIVOT_Y:
+                view.setPivotY(value);
+                break;
+        }
+    }
+
+    // 关键帧效果, translation/pivot 的值为 page 尺寸的比例
+    private void transformPageKeyframes(View view, float position) {
+        int width = view.getWidth();
+        int height = view.getHeight();
+        for (int prop = 0; prop < PROP_COUNT; prop++) {
+            if (!pageKeyframes.hasProp(prop)) {
+                continue;
+            }
+            float value = pageKeyframes.getValue(prop, position);
+            switch (prop) {
+                case PROP_ALPHA:
+                    value = Math.max(0f, Math.min(1f, value));
+                    break;
+                case PROP_TRANSLATION_X:
+                case PROP_PIVOT_X:
+                    value = value * width;
+                    break;
+                case PROP_TRANSLATION_Y:
+                case PROP_PIVOT_Y:
+                    value = value * height;
+                    break;
+            }
+            setProperty(view, prop, value);
         }
     }
 
@@ -159,25 +463,25 @@ public class Viewpager2Transformer implements ViewPager2.PageTransformer {
                     pivotY = 0f;
                 }
             }
-            view.setScaleX(scale);
-            view.setScaleY(scale);
-            view.setPivotX(pivotX);
-            view.setPivotY(pivotY);
+            setProperty(view, PROP_SCALE_X, scale);
+            setProperty(view, PROP_SCALE_Y, scale);
+            setProperty(view, PROP_PIVOT_X, pivotX);
+            setProperty(view, PROP_PIVOT_Y, pivotY);
         }
         // 两侧 view 透明度
         if (MIN_ALPHA < 1) {
             float alpha = position >= -1 && position <= 1
                     ? (1 - Math.abs(position)) * (1 - MIN_ALPHA) + MIN_ALPHA
                     : MIN_ALPHA;
-            view.setAlpha(alpha);
+            setProperty(view, PROP_ALPHA, alpha);
         }
         // 在 padding>0 的情况下, 两侧 view 可显示一部分
         if (PAGE_PADDING > 0) {
             float margin = (PAGE_MARGIN > 0f ? PAGE_MARGIN : PAGE_PADDING / 2) * position;
             if (pageHorizontal) {
-                view.setTranslationX(margin);
+                setProperty(view, PROP_TRANSLATION_X, margin);
             } else {
-                view.setTranslationY(margin);
+                setProperty(view, PROP_TRANSLATION_Y, margin);
             }
         }
     }
@@ -186,7 +490,7 @@ public class Viewpager2Transformer implements ViewPager2.PageTransformer {
     //https://developer.android.com/training/animation/screen-slide-2#zoom-out
     private void transformPageZoomOut(View view, float position) {
         if (position < -1 || position > 1) {
-            view.setAlpha(0f);
+            setProperty(view, PROP_ALPHA, 0f);
             return;
         }
         int pageWidth = view.getWidth();
@@ -195,14 +499,14 @@ public class Viewpager2Transformer implements ViewPager2.PageTransformer {
         float vMargin = pageHeight * (1 - scale) / 2;
         float hMargin = pageWidth * (1 - scale) / 2;
         int mod = position < 0 ? -1 : 1;
-        view.setScaleX(scale);
-        view.setScaleY(scale);
+        setProperty(view, PROP_SCALE_X, scale);
+        setProperty(view, PROP_SCALE_Y, scale);
         if (pageHorizontal) {
-            view.setTranslationX(mod * (vMargin / 2 - hMargin));
+            setProperty(view, PROP_TRANSLATION_X, mod * (vMargin / 2 - hMargin));
         } else {
-            view.setTranslationY(mod * (hMargin / 2 - vMargin));
+            setProperty(view, PROP_TRANSLATION_Y, mod * (hMargin / 2 - vMargin));
         }
-        view.setAlpha(MIN_ALPHA + (scale - MIN_SCALE) / (1 - MIN_SCALE) * (1 - MIN_ALPHA));
+        setProperty(view, PROP_ALPHA, MIN_ALPHA + (scale - MIN_SCALE) / (1 - MIN_SCALE) * (1 - MIN_ALPHA));
     }
 
     //Depth
@@ -210,36 +514,36 @@ public class Viewpager2Transformer implements ViewPager2.PageTransformer {
     private void transformPageDepth(View view, float position) {
         if (position < -1) { // [-Infinity,-1)
             // This page is way off-screen to the left.
-            view.setAlpha(0f);
+            setProperty(view, PROP_ALPHA, 0f);
 
         } else if (position <= 0) { // [-1,0]
             // Use the default slide transition when moving to the left page
-            view.setAlpha(1f);
+            setProperty(view, PROP_ALPHA, 1f);
             if (pageHorizontal) {
-                view.setTranslationX(0f);
+                setProperty(view, PROP_TRANSLATION_X, 0f);
             } else {
-                view.setTranslationY(0f);
+                setProperty(view, PROP_TRANSLATION_Y, 0f);
             }
-            view.setScaleX(1f);
-            view.setScaleY(1f);
+            setProperty(view, PROP_SCALE_X, 1f);
+            setProperty(view, PROP_SCALE_Y, 1f);
 
         } else if (position <= 1) { // (0,1]
             // Fade the page out.
-            view.setAlpha(1 - position);
+            setProperty(view, PROP_ALPHA, 1 - position);
             // Counteract the default slide transition
             float offset = -position * (pageHorizontal ? view.getWidth() : view.getHeight());
             if (pageHorizontal) {
-                view.setTranslationX(offset);
+                setProperty(view, PROP_TRANSLATION_X, offset);
             } else {
-                view.setTranslationY(offset);
+                setProperty(view, PROP_TRANSLATION_Y, offset);
             }
             // Scale the page down (between MIN_SCALE and 1)
             float scale = MIN_SCALE + (1 - MIN_SCALE) * (1 - Math.abs(position));
-            view.setScaleX(scale);
-            view.setScaleY(scale);
+            setProperty(view, PROP_SCALE_X, scale);
+            setProperty(view, PROP_SCALE_Y, scale);
         } else { // (1,+Infinity]
             // This page is way off-screen to the right.
-            view.setAlpha(0f);
+            setProperty(view, PROP_ALPHA, 0f);
         }
     }
 }
@@ -0,0 +1,183 @@
+package com.malacca.viewpager2;
+
+import java.util.Arrays;
+
+import android.view.View;
+import android.view.Choreographer;
+import android.util.SparseIntArray;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import com.github.malacca.widget.ViewPager2;
+
+/**
+ * 计算各个已挂载 page 的可见比例, 仅在跨越 thresholds 时通知 js (onPageVisibilityChanged)
+ * 同一帧内的多个变化合并为一个消息, js 无需监听 onPageScroll 即可控制 视频播放/暂停/预加载
+ * 可见比例按 page 的布局位置计算, 不受 transformer 的 平移/缩放 影响
+ */
+class Viewpager2Visibility extends ViewPager2.OnPageChangeCallback implements Choreographer.FrameCallback {
+    private static final float[] DEFAULT_THRESHOLDS = {0f, 0.5f, 1f};
+    // 避免浮点误差导致完全显示的 page 达不到 1
+    private static final float EPSILON = 0.001f;
+
+    private final ViewPager2 mViewpager2;
+    private final Viewpager2Adapter mAdapter;
+    private float[] thresholds = DEFAULT_THRESHOLDS;
+
+    // 各个 page(真实 position) 最后通知的 可见级别, 即达到的 threshold 个数, 0 为不可见
+    private final SparseIntArray pageLevels = new SparseIntArray();
+    // 本次计算的 可见比例, 复用以免每帧创建, value 为 Float.floatToIntBits, 避免装箱
+    private final SparseIntArray pageFractions = new SparseIntArray();
+    // 待发送的 可见比例, 在下一帧统一发送, value 同上
+    private final SparseIntArray pendingPages = new SparseIntArray();
+    private boolean frameScheduled = false;
+
+    Viewpager2Visibility(ViewPager2 viewpager2, Viewpager2Adapter adapter) {
+        mViewpager2 = viewpager2;
+        mAdapter = adapter;
+        viewpager2.registerOnPageChangeCallback(this);
+    }
+
+    // 可见比例的 阈值 列表, 如 [0, 0.5, 1], 0 表示刚刚可见
+    void setThresholds(@Nullable ReadableArray values) {
+        if (values == null || values.size() == 0) {
+            thresholds = DEFAULT_THRESHOLDS;
+        } else {
+            float[] newThresholds = new float[values.size()];
+            for (int i = 0; i < newThresholds.length; i++) {
+                newThresholds[i] = Math.max(0f, Math.min(1f, (float) values.getDouble(i)));
+            }
+            Arrays.sort(newThresholds);
+            thresholds = newThresholds;
+        }
+        pageLevels.clear();
+        update();
+    }
+
+    void destroy() {
+        mViewpager2.unregisterOnPageChangeCallback(this);
+        if (frameScheduled) {
+            frameScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+        update();
+    }
+
+    @Override
+    public void onPageScrollStateChanged(int state) {
+        if (state == ViewPager2.SCROLL_STATE_IDLE) {
+            update();
+        }
+    }
+
+    // 重新计算各 page 的可见级别, 有变化的加入待发送队列
+    // 中间跳转 (jumpNear) 期间经过的 page 对 js 不可见, 不计算
+    void update() {
+        if (!mAdapter.hasEventListener(Viewpager2Adapter.EVENT_PAGE_VISIBILITY) || mAdapter.isPageEventsSuppressed()) {
+            return;
+        }
+        RecyclerView recyclerView = Viewpager2Manager.getRecyclerView(mViewpager2);
+        if (recyclerView == null) {
+            return;
+        }
+        boolean horizontal = mViewpager2.getOrientation() == ViewPager2.ORIENTATION_HORIZONTAL;
+        int viewport = horizontal ? recyclerView.getWidth() : recyclerView.getHeight();
+        if (viewport <= 0) {
+            return;
+        }
+        pageFractions.clear();
+        for (int i = 0, count = recyclerView.getChildCount(); i < count; i++) {
+            View child = recyclerView.getChildAt(i);
+            int position = recyclerView.getChildAdapterPosition(child);
+            if (position == RecyclerView.NO_POSITION) {
+                continue;
+            }
+            int start = horizontal ? child.getLeft() : child.getTop();
+            int end = horizontal ? child.getRight() : child.getBottom();
+            if (end <= start) {
+                continue;
+            }
+            float fraction = (float) (Math.min(end, viewport) - Math.max(start, 0)) / (end - start);
+            fraction = Math.max(0f, Math.min(1f, fraction));
+            // loop 模式下 item 个数较少时, 同一 item 可能同时挂载两个, 取可见比例大的
+            position = mAdapter.getRealPosition(position);
+            int index = pageFractions.indexOfKey(position);
+            if (index < 0 || fraction > Float.intBitsToFloat(pageFractions.valueAt(index))) {
+                pageFractions.put(position, Float.floatToIntBits(fraction));
+            }
+        }
+        // 已不再挂载的 page 视为不可见
+        for (int i = pageLevels.size() - 1; i >= 0; i--) {
+            int position = pageLevels.keyAt(i);
+            if (pageFractions.indexOfKey(position) < 0) {
+                pageLevels.removeAt(i);
+                queuePage(position, 0f);
+            }
+        }
+        for (int i = 0, size = pageFractions.size(); i < size; i++) {
+            int position = pageFractions.keyAt(i);
+            float fraction = Float.intBitsToFloat(pageFractions.valueAt(i));
+            int level = getLevel(fraction);
+            if (level != pageLevels.get(position)) {
+                if (level == 0) {
+                    pageLevels.delete(position);
+                } else {
+                    pageLevels.put(position, level);
+                }
+                queuePage(position, fraction);
+            }
+        }
+    }
+
+    // 达到的 threshold 个数, 0 的阈值需大于 0 才算达到
+    private int getLevel(float fraction) {
+        int level = 0;
+        for (float threshold : thresholds) {
+            if (threshold <= 0f ? fraction > 0f : fraction >= threshold - EPSILON) {
+                level++;
+            }
+        }
+        return level;
+    }
+
+    private void queuePage(int position, float fraction) {
+        pendingPages.put(position, Float.floatToIntBits(fraction));
+        if (!frameScheduled) {
+            frameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        int size = pendingPages.size();
+        if (size == 0) {
+            return;
+        }
+        WritableArray pages = Arguments.createArray();
+        for (int i = 0; i < size; i++) {
+            float fraction = Float.intBitsToFloat(pendingPages.valueAt(i));
+            int level = getLevel(fraction);
+            WritableMap page = Arguments.createMap();
+            page.putInt("position", pendingPages.keyAt(i));
+            page.putDouble("visible", fraction);
+            page.putDouble("threshold", level == 0 ? -1 : thresholds[level - 1]);
+            pages.pushMap(page);
+        }
+        pendingPages.clear();
+        WritableMap event = Arguments.createMap();
+        event.putString("event", "onPageVisibilityChanged");
+        event.putArray("pages", pages);
+        mAdapter.sendEvent(event);
+    }
+}
@@ -1,19 +1,51 @@
 import React from 'react';
+import {View} from 'react-native';
 import ViewPagerBase from './ViewPagerBase';
 
+// windowSize 模式下 page 内容铺满外层容器
+const fillStyle = {
+  position: 'absolute',
+  left: 0,
+  right: 0,
+  top: 0,
+  bottom: 0,
+  width: undefined,
+  height: undefined,
+};
+
 class ViewPager extends ViewPagerBase {
+  // 设置了 windowSize, native 端通过 windowChanged 消息告知窗口, 窗口外的 page 仅渲染空容器
+  _window = null;
 
   // 首次挂载, 需命令通知 currentIndex, 因为首次传递 props.currentIndex 时
   // native 端 viewpager 的子 view 个数为 0, currentIndex 会被忽略
   componentDidMount(){
     this.setCurrentIndex(this.props.currentIndex);
-    this._startAutoPlay();
   }
 
-  componentDidUpdate(prevProps){
-    if (Boolean(this.props.loop) !== Boolean(prevProps.loop)) {
-      this._startAutoPlay(true);
+  // 处理 native 端消息
+  _onViewpager2Event(e) {
+    const {event, current, window} = e.nativeEvent;
+    if (event === 'windowChanged') {
+      const last = this._window;
+      if (!last || last.current !== current || last.window !== window) {
+        this._window = {current, window};
+        this.forceUpdate();
+      }
+      return;
     }
+    super._onViewpager2Event(e);
+  }
+
+  // index 是否在窗口内, 初始时按 currentIndex 和 windowSize 计算
+  _inWindow(index, count) {
+    const {windowSize=0, currentIndex=0} = this.props;
+    const {current, window} = this._window || {current: parseInt(currentIndex||0), window: windowSize};
+    let distance = Math.abs(index - current);
+    if (this._isLoop) {
+      distance = Math.min(distance, count - distance);
+    }
+    return distance <= window;
   }
 
   _renderSubViews(children){
@@ -21,10 +53,21 @@ class ViewPager extends ViewPagerBase {
       return [];
     }
     const itemStyle = this._itemStyle;
-    const newChildren = React.Children.map(children, function(child, index) {
+    const windowed = this.props.windowSize > 0;
+    const count = children.length;
+    const newChildren = React.Children.map(children, (child, index) => {
       if (!child) {
         return null;
       }
+      // 外层容器始终保留, native 端的 page 个数不变, 窗口外仅卸载内容
+      if (windowed) {
+        return <View key={"item" + index} style={itemStyle} collapsable={false}>
+          {this._inWindow(index, count) ? React.createElement(child.type, {
+            ...child.props,
+            style: [child.props.style, fillStyle],
+          }) : null}
+        </View>
+      }
       const newProps = {
         ...child.props,
         style: [child.props.style, itemStyle],
@@ -33,15 +76,6 @@ class ViewPager extends ViewPagerBase {
       };
       return React.createElement(child.type, newProps);
     });
-    if (this._isLoop) {
-      const first = newChildren[0], last = newChildren[newChildren.length - 1];
-      newChildren.unshift(
-        React.cloneElement(last, {key:"_loop_first_"})
-      );
-      newChildren.push(
-        React.cloneElement(first, {key:"_loop_last_"})
-      );
-    }
     return newChildren;
   }
   
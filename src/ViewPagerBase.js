@@ -4,15 +4,29 @@ import splitLayoutProps from 'react-native/Libraries/StyleSheet/splitLayoutProps
 
 const RNViewpager2 = requireNativeComponent('RNViewpager2');
 
-const TransformerProps = ["alpha", "scale", "padding", "margin"];
+const TransformerProps = ["alpha", "scale", "padding", "margin", "hardwareLayer", "layerBudget"];
+
+// transformer 为对象时, 是关键帧效果的配置, 由 native 端根据 page position 插值
+export function isKeyframes(transformer) {
+  return Boolean(transformer) && typeof transformer === 'object';
+}
+
+// 支持 padding 的效果 (一屏显示多个)
+export function supportPadding(transformer) {
+  return transformer === 'card' || isKeyframes(transformer);
+}
+
 function makeTransformer(type, props) {
-  const transformer = {
+  const transformer = isKeyframes(type) ? {
+    type: 'keyframes',
+    keyframes: type
+  } : {
     type
   };
   TransformerProps.forEach(k => {
     if (k in props) {
       const num = props[k];
-      if (Number(num) === num) {
+      if (Number(num) === num || typeof num === 'boolean') {
         transformer[k] = num;
       }
     }
@@ -63,7 +77,7 @@ class PagerRefresh extends PureComponent {
   }
 }
 
-const eventListenrs = ['onPageScroll', 'onPageScrollStateChanged', 'onPageSelected', 'onPageChanged'];
+const eventListenrs = ['onPageScroll', 'onPageScrollStateChanged', 'onPageSelected', 'onPageChanged', 'onAutoplay', 'onPageVisibilityChanged', 'onSwipePerf'];
 export default class extends PureComponent {
   _refreshRef = null;
   _backgroundView = null;
@@ -80,10 +94,6 @@ export default class extends PureComponent {
     }
   }
 
-  componentWillUnmount(){
-    this._stopAutoPlay();
-  }
-
   // 获取 子view 个数
   _childrenCount = 0;
   getCount = () => {
@@ -93,16 +103,21 @@ export default class extends PureComponent {
     this._childrenCount = count;
   }
 
-  // 设置选中的 item index (自动修正 loop index)
+  // 设置选中的 item index (loop 模式由 native 端映射到最近的虚拟 position)
+  // smooth 可以为对象 {duration, easing, jump}, jump='near' 时远距离切换先跳到目标相邻 page 再平滑滚动
   setCurrentIndex = (index, smooth) => {
     this._setShowIndex(this._getShowIndex(index), smooth);
   }
   _getShowIndex = (index) => {
     index = parseInt(index||0);
-    index = Math.max(0, Math.min(this._childrenCount - 1, index));
-    return this._isLoop ? index + 1 : index;
+    return Math.max(0, Math.min(this._childrenCount - 1, index));
   }
   _setShowIndex = (index, smooth) => {
+    if (smooth && typeof smooth === 'object') {
+      const {duration=0, easing=null, jump} = smooth;
+      this._sendCommand('setCurrentIndex', [index, true, parseInt(duration)||0, easing, jump === 'near']);
+      return;
+    }
     this._sendCommand('setCurrentIndex', [index, Boolean(smooth)])
   }
 
@@ -133,6 +148,22 @@ export default class extends PureComponent {
     this._sendCommand('endFakeDrag', [0]);
   }
 
+  // 由 native 端在 UI 线程执行一段模拟拖拽动画, 结束后回调 callback(finished)
+  // 每次调用 native 端都会回复一次结束消息, 按顺序对应回调
+  _fakeDragCallbacks = [];
+  animateFakeDrag = (distance, options, callback) => {
+    const {duration=300, easing=null, returnToOrigin=false} = options||{};
+    this._fakeDragCallbacks.push(callback);
+    this._sendCommand('animateFakeDrag', [Number(distance)||0, parseInt(duration)||0, easing, Boolean(returnToOrigin)]);
+  }
+
+  // 获取性能统计数据 (需开启 perfMonitor), reset=true 时获取后清空
+  _perfStatsCallbacks = [];
+  getPerfStats = (callback, reset) => {
+    this._perfStatsCallbacks.push(callback);
+    this._sendCommand('getPerfStats', [Boolean(reset)]);
+  }
+
   // 发送消息给 native 端
   _nodeHandle = null;
   _sendCommand = (command, args) => {
@@ -146,27 +177,18 @@ export default class extends PureComponent {
   _scrollPage = 0;
   _onViewpager2Event(e) {
     const {event, ...msg} = e.nativeEvent;
-    if (event === 'onPageScrollStateChanged') {
-      if (msg.state === 0) {
-        this._startAutoPlay();
-      } else if (msg.state === 1) {
-        this._stopAutoPlay();
-      }
-    } else if (this._isLoop) {
-      msg.position = msg.position - 1;
+    if (event === 'animateFakeDragEnd') {
+      const callback = this._fakeDragCallbacks.shift();
+      callback && callback(msg.finished);
+      return;
+    }
+    if (event === 'perfStats') {
+      const callback = this._perfStatsCallbacks.shift();
+      callback && callback(msg);
+      return;
     }
     this.props[event] && this.props[event](msg);
-    // loop 模式在滑到边界 index 时, 修正 currentIndex
     if (event === "onPageChanged") {
-      if (this._isLoop) {
-        if (msg.position < 0) {
-          this._setShowIndex(this._childrenCount);
-          return;
-        } else if (msg.position >= this._childrenCount) {
-          this._setShowIndex(1);
-          return;
-        }
-      }
       this._scrollPage = msg.position;
       this._enableRefresh();
     }
@@ -179,44 +201,7 @@ export default class extends PureComponent {
     }
   }
 
-  // 自动播放
   _isLoop = false;
-  _autPlayTimer = null;
-  _startAutoPlay = (fromPropsChange) => {
-    this._stopAutoPlay();
-    if (!this.props.autoplay) {
-      return;
-    }
-    // 这里应该是 android viewpager2 的 bug, 在 props 更新
-    // 由 loop 转为 非loop 且当前处于开头第一个 page
-    // autoPlay 的下一个 index 为 1, 但 native 端的 currentIndex 也是 1
-    // 由于二者相等, 所以自动播放无法启动 (正确情况下 native 段应该是 0 才对)
-    // 所以这里通过 fakeDrag 修正一下
-    if (fromPropsChange && !this._isLoop && this._scrollPage === 0) {
-      this.beginFakeDrag();
-      this.fakeDragBy(.5);
-      this.endFakeDrag();
-    }
-    this._autPlayTimer = setTimeout(() => {
-      this._autPlayTimer = null;
-      let next;
-      if (this._scrollPage >= this._childrenCount - 1) {
-        if (this.props.autoplayDirection) {
-          return;
-        }
-        next = this._isLoop ? this._childrenCount + 1 : 0;
-      } else {
-        next = this._scrollPage + (this._isLoop ? 2 : 1);
-      }
-      this._setShowIndex(next, true);
-    }, this.props.autoplayTimeout||2500);
-  }
-  _stopAutoPlay = () => {
-    if (this._autPlayTimer) {
-      clearTimeout(this._autPlayTimer);
-      this._autPlayTimer = null;
-    }
-  }
 
   // 计算 item style
   _itemStyleStatus = null;
@@ -225,7 +210,7 @@ export default class extends PureComponent {
   _computeBeforeRender() {
     const {horizontal, transformer="", padding=0, loop} = this.props;
     this._isLoop = loop && this._childrenCount > 1;
-    const newStatus = transformer + "_" + padding + "_" + (horizontal ? '1' : '0');
+    const newStatus = (supportPadding(transformer) ? 'padding' : '') + "_" + padding + "_" + (horizontal ? '1' : '0');
     if (newStatus === this._itemStyleStatus) {
       this._itemStyleChange = false;
       return;
@@ -233,7 +218,7 @@ export default class extends PureComponent {
     this._itemStyleStatus = newStatus;
     this._itemStyleChange = true;
     let paddingHorizontal = paddingVertical = 0;
-    if (transformer === 'card' && padding > 0) {
+    if (supportPadding(transformer) && padding > 0) {
       if (horizontal) {
         paddingHorizontal = padding;
       } else {
@@ -254,7 +239,6 @@ export default class extends PureComponent {
   _renderViewpager(extraProps) {
     const {
       style,
-      autoplay,
       horizontal,
       currentIndex,
       transformer,
@@ -278,8 +262,7 @@ export default class extends PureComponent {
     ) : 0;
 
     // 设置需要监听的事件 
-    // 1. 为了可以同步获取当前 index, 默认监听 onPageChanged
-    // 2. 如果 autoplay, 默认监听 onPageScrollStateChanged
+    // 为了可以同步获取当前 index, 默认监听 onPageChanged
     const listeners = {};
     eventListenrs.forEach(k => {
       if (k in leftProps && leftProps[k]) {
@@ -289,9 +272,6 @@ export default class extends PureComponent {
     if (!listeners.onPageChanged) {
       listeners.onPageChanged = true;
     }
-    if (!listeners.onPageScrollStateChanged && autoplay) {
-      listeners.onPageScrollStateChanged = true;
-    }
 
     // 是否使用 item 背景
     let withBackgroundView = false;
@@ -1,6 +1,6 @@
 import React from 'react';
 import {View} from 'react-native';
-import ViewPagerBase from './ViewPagerBase';
+import ViewPagerBase, {supportPadding} from './ViewPagerBase';
 
 function getInt(v) {
   v = parseInt(v);
@@ -17,6 +17,17 @@ class ViewPagerList extends ViewPagerBase {
   _viewPageData = [];
   _recyleViews = null;
   _recyleIndex = {};
+  _recyleTypes = [];
+  // keyed 模式下 update 的新数据, native 端 diff 完成(keysApplied 消息) 后才切换, 期间的 insert/remove/updateItem 延后执行
+  _keysId = 0;
+  _pendingData = null;
+  _pendingKeys = null;
+  _pendingOps = [];
+  // 复用 view 的 react key, 释放后新增的 view 使用新 key, 不会复用正在释放的 view
+  _recyleKeys = [];
+  _recyleKeySeq = 0;
+  // keyed 模式下已发送给 native 端的 key 列表, 与 _viewPageData 一一对应
+  _itemKeys = [];
 
   constructor(props) {
     super(props);
@@ -31,43 +42,90 @@ class ViewPagerList extends ViewPagerBase {
     // 复用view 个数的计算公式为 count = 5 + 2 * offscreenPageLimit + 一屏显示item个数 - 1;
     // 一般情况下, 一屏显示 1 个 item, 但在有些情况(如 transformer=card), 一般显示3个
     // 即实际显示 item 的两端会显示 前后 item 的一部分, 但也不排除通过 padding margin 的设置, 一屏显示更多个
-    // _itemCacheSize 默认根据上述公式计算, 且保持只增不减, 支持通过 itemSize 来设置一屏几个
+    // _itemCacheSize 默认根据上述公式计算, 支持通过 itemSize 来设置一屏几个
+    // 一般只增不减, 仅 adaptivePool 模式下 native 端会通知释放末尾闲置的 子view (releaseViewHolders 消息)
     // 这里的 itemCacheSize 仅针对一般情况, 但实际使用中可能出现预置 view 不够用的情况
     // 在不够用时, js 会接收到 addViewHolder 消息, 此时需增加子 view
     // 若期望一次性够用, 可根据实际场景设置 itemSize 来调节, 在创建时就多弄几个 view
     const {transformer, itemSize} = props;
-    const itemSizeAuto = (itemSize ? itemSize : 1) + (transformer === 'card' ? 3 : 0);
+    const itemSizeAuto = (itemSize ? itemSize : 1) + (supportPadding(transformer) ? 3 : 0);
     this._itemCacheSize = 5 + 2 * Math.max(0, offscreenPageLimit) + itemSizeAuto - 1;
+
+    // 设置了 getItemType, 复用 view 按类型区分, 只会被复用到相同类型的 page
+    // 初始时按 currentIndex 附近 item 的类型创建复用 view, 不够用时 native 端会通过 addViewHolder 告知所需类型
+    const size = this._itemCacheSize;
+    if (this._isTyped()) {
+      const data = this._viewPageData;
+      const start = Math.max(0, Math.min((getInt(props.currentIndex)||0) - Math.floor(size / 2), data.length - size));
+      this._recyleTypes = data.slice(start, start + size).map((item, i) => this._getType(item, start + i));
+    }
+    while (this._recyleTypes.length < size) {
+      this._recyleTypes.push(0);
+    }
+  }
+
+  // 设置了 keyExtractor, native 端会根据 key 按需通知重新渲染, 无需 js 重置所有 子view
+  _isKeyed = () => {
+    return typeof this.props.keyExtractor === 'function';
+  }
+
+  _getKeys = () => {
+    return this._itemKeys = this._uniqueKeys(this._viewPageData, 0, new Set());
+  }
+
+  // native 端以 key 作为 stableId, key 重复或为空会导致 page 错乱, 这里给出警告并加后缀使其唯一
+  // used 为已使用的 key, 生成的 key 也会添加到 used
+  _uniqueKeys = (data, start, used) => {
+    return data.map((item, i) => {
+      const value = this.props.keyExtractor(item, start + i);
+      let key = value === null || value === undefined ? '' : String(value);
+      if (key === '' || used.has(key)) {
+        console.warn('ViewPagerList: keyExtractor returned ' + (
+          key === '' ? 'an empty key' : 'a duplicate key "' + key + '"'
+        ) + ' at index ' + (start + i));
+        let n = 1;
+        while (used.has(key + '#' + n)) {
+          n++;
+        }
+        key = key + '#' + n;
+      }
+      used.add(key);
+      return key;
+    });
+  }
+
+  // 设置了 getItemType, page 有多种类型
+  _isTyped = () => {
+    return typeof this.props.getItemType === 'function';
+  }
+
+  _getType = (item, index) => {
+    return getInt(this.props.getItemType(item, index)) || 0;
+  }
+
+  _getTypes = () => {
+    return this._viewPageData.map(this._getType);
   }
 
-  _getLoopCount = () => {
-    return this._childrenCount + (this._isLoop ? 2 : 0);
+  // setCount / insertCount 命令附带 key 数组和 type 数组, 未使用的补 null
+  _pushKeysAndTypes = (args, getKeys, getTypes) => {
+    const keyed = this._isKeyed(), typed = this._isTyped();
+    if (keyed || typed) {
+      args.push(keyed ? getKeys() : null);
+    }
+    if (typed) {
+      args.push(getTypes());
+    }
+    return args;
   }
 
   // 首次挂载, 需命令通知 currentIndex, 因为首次传递 props.currentIndex 时
   // native 端 viewpager 的子 view 个数为 0, currentIndex 会被忽略
   componentDidMount(){
-    this._sendCommand('setCount', [
-      this._getLoopCount(),
+    this._sendCommand('setCount', this._pushKeysAndTypes([
+      this._childrenCount,
       this._getShowIndex(this.props.currentIndex)
-    ]);
-    this._startAutoPlay();
-  }
-
-  // loop 发生变动, 需修正, 通过 insertCount/removeCount 可避免 loop 变动导致的闪屏
-  componentDidUpdate(prevProps){
-    const loop = Boolean(this.props.loop);
-    if (loop !== Boolean(prevProps.loop)) {
-      this._stopAutoPlay();
-      if (loop) {
-        this._sendCommand('insertCount', [0, 1]);
-        this._sendCommand('insertCount', [this._childrenCount + 1, 1]);
-        this._startAutoPlay(true);
-      } else {
-        this._sendCommand('removeCount', [0, 1]);
-        this._sendCommand('removeCount', [this._childrenCount, 1]);
-      }
-    }
+    ], this._getKeys, this._getTypes));
   }
 
   // 追加 list 数据
@@ -78,44 +136,122 @@ class ViewPagerList extends ViewPagerBase {
   // 在 index 位置插入 data (index 本身也会被替换)
   // index 可缺省, 默认为 0
   insert = (data, index, selected) => {
+    if (this._pendingData) {
+      this._pendingOps.push(() => this.insert(data, index, selected));
+      return;
+    }
     data=data||[];
     if (data.length > 0) {
       index = index === undefined ? 0 : index;
       const Len = this._viewPageData.length;
       this._viewPageData.splice(index, 0, ...data);
-      this._updateCount(this._isLoop || index < Len, true, selected);
+      if (this._isKeyed()) {
+        this._sendCommand('insertCount', this._pushKeysAndTypes(
+          [index, data.length],
+          () => {
+            const keys = this._uniqueKeys(data, index, new Set(this._itemKeys));
+            this._itemKeys.splice(index, 0, ...keys);
+            return keys;
+          },
+          () => data.map((item, i) => this._getType(item, index + i))
+        ));
+        this._updateCount(false, false, selected);
+        return;
+      }
+      this._updateCount(index < Len, true, selected);
     }
   }
 
   // 从 index 位置开始移除 length 个(含 index)
   // length 可缺省, 默认为 1
   remove = (index, length, selected) => {
+    if (this._pendingData) {
+      this._pendingOps.push(() => this.remove(index, length, selected));
+      return;
+    }
     length = length === undefined ? 1 : length;
     if (length > 0) {
       this._viewPageData.splice(index, length);
+      if (this._isKeyed()) {
+        this._itemKeys.splice(index, length);
+        this._sendCommand('removeCount', [index, length]);
+        this._updateCount(false, false, selected);
+        return;
+      }
       this._updateCount(true, true, selected);
     }
   }
 
   // 一次性更新 list 数据
   update = (listData, selected) => {
+    if (this._isKeyed()) {
+      this._updateKeys(listData||[], selected);
+      return;
+    }
     const Len = this._viewPageData.length;
     this._viewPageData = listData||[];
     this._updateCount(true, Len !== this._viewPageData.length, selected);
   }
 
+  // 设置了 keyExtractor, 将新的 key 列表交给 native 端在后台计算差异
+  // key 相同但数据对象发生了变化的 item 作为 dirty 一并发送, 这些 page 会重新渲染
+  // diff 完成前 native 端 bind 的仍是旧数据的 position, 所以新数据暂存, 收到 keysApplied 后再切换
+  _updateKeys = (listData, selected) => {
+    const oldItems = {};
+    const oldKeys = this._pendingKeys || this._itemKeys;
+    (this._pendingData || this._viewPageData).forEach((item, index) => {
+      oldItems[oldKeys[index]] = item;
+    });
+    const keys = this._uniqueKeys(listData, 0, new Set());
+    this._pendingData = listData;
+    this._pendingKeys = keys;
+    const dirty = [];
+    listData.forEach((item, index) => {
+      const key = keys[index];
+      if (key in oldItems && oldItems[key] !== item) {
+        dirty.push(key);
+      }
+    });
+    selected = getInt(selected);
+    this._sendCommand('setKeys', [
+      keys,
+      selected === null ? -1 : selected,
+      dirty,
+      this._isTyped() ? listData.map(this._getType) : null,
+      ++this._keysId
+    ]);
+  }
+
+  // native 端已应用 diff, 切换为新数据, 并执行期间延后的操作
+  _applyPendingData = (id) => {
+    if (!this._pendingData || id !== this._keysId) {
+      return;
+    }
+    this._viewPageData = this._pendingData;
+    this._itemKeys = this._pendingKeys;
+    this._pendingData = null;
+    this._pendingKeys = null;
+    this._setCount(this._viewPageData.length);
+    const ops = this._pendingOps;
+    this._pendingOps = [];
+    ops.forEach(op => op());
+  }
+
   // 数据长度发生变化
   _updateCount = (reset, notice, selected) => {
     this._setCount(this._viewPageData.length);
-    if (reset) {
+    if (reset && !this._isKeyed()) {
       for (let from in this._recyleIndex) {
         this._updateSubView(from, this._recyleIndex[from])
       }
     }
     selected = getInt(selected);
     if (notice) {
-      const args = [this._getLoopCount()];
-      if (selected !== null) {
+      const args = [this._childrenCount];
+      if (this._isKeyed() || this._isTyped()) {
+        args.push(selected === null ? -1 : selected);
+        this._pushKeysAndTypes(args, this._getKeys, this._getTypes);
+      } else if (selected !== null) {
         args.push(selected);
       }
       this._sendCommand('setCount', args);
@@ -135,6 +271,10 @@ class ViewPagerList extends ViewPagerBase {
 
   // 更新 index 数据并重新 render
   updateItem = (index, data) => {
+    if (this._pendingData) {
+      this._pendingOps.push(() => this.updateItem(index, data));
+      return;
+    }
     this._updateItem(index, false, data);
   }
 
@@ -150,6 +290,10 @@ class ViewPagerList extends ViewPagerBase {
 
   // 更新当前选中 page 的数据
   updateCurrentItem = (data) => {
+    if (this._pendingData) {
+      this._pendingOps.push(() => this.updateCurrentItem(data));
+      return;
+    }
     this._updateItem(this._scrollPage, false, data);
   }
 
@@ -160,23 +304,10 @@ class ViewPagerList extends ViewPagerBase {
     if (!force) {
       this._viewPageData[index] = data;
     }
-    let copyIndex = index, k, to;
-    if (this._isLoop) {
-      if (index === 0) {
-        copyIndex = this._childrenCount;
-      } else if (index === this._childrenCount - 1) {
-        copyIndex = -1;
-      }
-    }
-    for (k in this._recyleIndex) {
-      to = this._recyleIndex[k];
-      if (this._isLoop) {
-        if (to === index || to === copyIndex) {
-          this._renderItem(k, index, force);
-        }
-      } else if (to === index) {
+    // loop 模式下 item 个数较少时, 同一 index 可能同时显示在两个 子view 中
+    for (let k in this._recyleIndex) {
+      if (this._recyleIndex[k] === index) {
         this._renderItem(k, index, force);
-        break;
       }
     }
   }
@@ -190,17 +321,61 @@ class ViewPagerList extends ViewPagerBase {
     }
   }
 
+  // 获取复用 view 的命中统计, reset=true 时获取后清空
+  _poolStatsCallbacks = [];
+  getPoolStats = (callback, reset) => {
+    this._poolStatsCallbacks.push(callback);
+    this._sendCommand('getPoolStats', [Boolean(reset)]);
+  }
+
   // 处理 native 端消息
   _onViewpager2Event(e) {
     const nativeEvent = e.nativeEvent;
-    if (nativeEvent.event === "bindViewHolder") {
-      this._updateSubView(
-        nativeEvent.from, 
-        this._isLoop ? nativeEvent.to - 1 : nativeEvent.to
-      );
+    if (nativeEvent.event === "bindViewHolders") {
+      // native 端将一帧内的 bind 合并发送, 这里一次性更新 (同一事件回调内 setState 会合并渲染)
+      // render=false 说明 子view 内容未变 (stableKeys 模式下仅 position 发生偏移), 只需更新 renderItem 收到的 index
+      nativeEvent.holders.forEach(({from, to, render}) => {
+        if (render === false) {
+          this._recyleIndex[from] = to;
+          const key = 'recyle' + from;
+          key in this.refs && this.refs[key].reindex(to);
+        } else {
+          this._updateSubView(from, to);
+        }
+      });
+    } else if (nativeEvent.event === "trimmed") {
+      // 系统内存不足, native 端已释放这些 子view, 清空其内容以释放 js 端渲染的组件
+      nativeEvent.holders.forEach(from => {
+        delete this._recyleIndex[from];
+        const key = 'recyle' + from;
+        if (key in this.refs) {
+          this.refs[key].update(null, -1);
+        }
+      });
     } else if (nativeEvent.event === "addViewHolder") {
+      this._recyleTypes.push(nativeEvent.type||0);
       this._itemCacheSize++;
       this.forceUpdate();
+    } else if (nativeEvent.event === "addViewHolders") {
+      // 快速滑动时 native 扩大了预加载范围, 提前一次性补充所需类型的复用 view
+      this._recyleTypes.push(...nativeEvent.types);
+      this._itemCacheSize += nativeEvent.types.length;
+      this.forceUpdate();
+    } else if (nativeEvent.event === "releaseViewHolders") {
+      // adaptivePool 模式下, native 端已不再使用末尾闲置的 子view, 缩减至 size 个
+      const size = nativeEvent.size;
+      for (let i = size; i < this._itemCacheSize; i++) {
+        delete this._recyleIndex[i];
+      }
+      this._recyleTypes.length = Math.min(this._recyleTypes.length, size);
+      this._recyleKeys.length = Math.min(this._recyleKeys.length, size);
+      this._itemCacheSize = size;
+      this.forceUpdate();
+    } else if (nativeEvent.event === "keysApplied") {
+      this._applyPendingData(nativeEvent.id);
+    } else if (nativeEvent.event === "poolStats") {
+      const callback = this._poolStatsCallbacks.shift();
+      callback && callback(nativeEvent);
     } else {
       super._onViewpager2Event(e);
     }
@@ -212,19 +387,10 @@ class ViewPagerList extends ViewPagerBase {
     if (!(key in this.refs)) {
       return;
     }
-    let index = to;
-    if (index < 0) {
-      if (!this._isLoop) {
-        return;
-      }
-      index = this._childrenCount - 1;
-    } else if (index >= this._childrenCount) {
-      if (!this._isLoop) {
-        return;
-      }
-      index = 0;
+    if (to < 0 || to >= this._childrenCount) {
+      return;
     }
-    this.refs[key].update(this._viewPageData[index], index);
+    this.refs[key].update(this._viewPageData[to], to);
     this._recyleIndex[from] = to;
   }
 
@@ -232,15 +398,27 @@ class ViewPagerList extends ViewPagerBase {
   _renderSubViews() {
     if (
       this._recyleViews != null 
-      && this._recyleViews.length >= this._itemCacheSize
+      && this._recyleViews.length === this._itemCacheSize
       && !this._itemStyleChange
     ) {
       return this._recyleViews;
     }
     const recyleViews = [];
+    const typed = this._isTyped();
     for (let key, i=0; i<this._itemCacheSize; i++) {
       key = 'recyle' + i;
-      recyleViews.push(<ViewItem key={key} ref={key} index={i} item={null} renderItem={this.props.renderItem} style={this._itemStyle}/>)
+      if (this._recyleKeys.length <= i) {
+        this._recyleKeys.push('recyle_' + this._recyleKeySeq++);
+      }
+      recyleViews.push(<ViewItem
+        key={this._recyleKeys[i]}
+        ref={key}
+        index={i}
+        item={null}
+        type={typed ? this._recyleTypes[i] : undefined}
+        renderItem={this.props.renderItem}
+        style={this._itemStyle}
+      />)
     }
     return this._recyleViews = recyleViews;
   }
@@ -249,6 +427,7 @@ class ViewPagerList extends ViewPagerBase {
     this._updateCount();
     this._computeBeforeRender();
     return this._renderViewpager({
+      stableKeys: this._isKeyed(),
       offscreenPageLimit: this._offscreenPage,
       children: this._renderSubViews()
     })
@@ -266,8 +445,19 @@ class ViewItem extends React.PureComponent {
   update(item, current){
     this.setState({item, current})
   }
+  reindex(current){
+    if (current !== this.state.current) {
+      this.setState({current})
+    }
+  }
   render(){
-    return <View style={this.props.style} collapsable={false}>
+    // 通过 nativeID 告知 native 端该复用 view 的类型
+    const {style, type} = this.props;
+    return <View
+      style={style}
+      collapsable={false}
+      nativeID={type === undefined ? undefined : 'viewpager2_type_' + type}
+    >
       {this.state.item ? this.props.renderItem(this.state.item, this.state.current) : null}
     </View>
   }